@@ -0,0 +1,53 @@
+package searchengine.benchmark;
+
+import java.util.Random;
+
+/**
+ * Synthetic page text for benchmarks: word forms drawn from a small Russian or English vocabulary with a
+ * skewed frequency, as in natural text, separated by spaces and punctuation.
+ */
+final class Corpus {
+
+    private static final String[] RUSSIAN = {
+            "и", "в", "не", "на", "что", "с", "по", "это", "как", "для", "театр", "театра", "театре", "спектакль",
+            "спектакли", "спектаклей", "сцена", "сцене", "актёр", "актёры", "актёров", "зрители", "зрителей",
+            "билет", "билеты", "билетов", "афиша", "афише", "премьера", "премьеры", "режиссёр", "режиссёра",
+            "новости", "новостей", "сегодня", "вчера", "Москва", "Москве", "года", "году", "город", "города",
+            "библиотека", "библиотеки", "книга", "книги", "книг", "читатели", "читателей", "выставка",
+            "выставки", "музей", "музея", "история", "истории", "дом", "дома", "домов", "улица", "улице",
+            "работает", "работали", "открылся", "открылась", "покупать", "купили", "смотреть", "смотрели",
+            "большой", "большая", "большие", "новый", "новая", "новые", "лучший", "лучшие", "детский", "детей"
+    };
+    private static final String[] ENGLISH = {
+            "the", "and", "of", "to", "in", "a", "is", "for", "on", "with", "theatre", "theatres", "show",
+            "shows", "performance", "performances", "stage", "actor", "actors", "audience", "ticket", "tickets",
+            "premiere", "director", "directors", "news", "today", "yesterday", "London", "year", "years", "city",
+            "cities", "library", "libraries", "book", "books", "reader", "readers", "exhibition", "museum",
+            "museums", "history", "house", "houses", "street", "streets", "works", "worked", "opened", "opening",
+            "buy", "bought", "watch", "watched", "watching", "big", "bigger", "new", "newer", "best", "better",
+            "children", "child", "running", "ran", "mice", "mouse", "people", "person", "was", "were", "been"
+    };
+    private static final String[] SEPARATORS = {" ", " ", " ", " ", ", ", ". ", " — ", "\n", " (", ") ", ": "};
+
+    private Corpus() {
+    }
+
+    static String[] vocabulary(String language) {
+        return "en".equals(language) ? ENGLISH : RUSSIAN;
+    }
+
+    static String text(String language, int words, long seed) {
+        String[] vocabulary = vocabulary(language);
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            text.append(word(vocabulary, random)).append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String word(String[] vocabulary, Random random) {
+        int rank = (int) (Math.abs(random.nextGaussian()) * vocabulary.length / 3);
+        return vocabulary[Math.min(vocabulary.length - 1, rank)];
+    }
+}
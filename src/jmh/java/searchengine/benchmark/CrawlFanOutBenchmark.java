@@ -0,0 +1,163 @@
+package searchengine.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import searchengine.config.AppConfig;
+import searchengine.fetch.PageFetcher;
+import searchengine.index.InvertedIndex;
+import searchengine.index.SiteRegistry;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.morphology.LemmaProcessor;
+import searchengine.morphology.SiteLemmaDictionary;
+import searchengine.repository.IndexBatchWriter;
+import searchengine.repository.PageContentStore;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.task.KnownPages;
+import searchengine.task.PageWriter;
+import searchengine.task.SiteIndexerTask;
+import searchengine.task.UrlFrontier;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Crawls a synthetic site served from a local HTTP server with a fixed response latency and reports
+ * crawled pages per second for each ForkJoinPool parallelism. Repositories are stubbed, so the numbers
+ * cover fetching, parsing and lemmatization only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class CrawlFanOutBenchmark {
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int parallelism;
+
+    @Param({"300"})
+    private int pages;
+
+    @Param({"4"})
+    private int linksPerPage;
+
+    @Param({"20"})
+    private int latencyMs;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String rootUrl;
+    private PageRepository pageRepository;
+    private SiteRepository siteRepository;
+    private IndexBatchWriter indexBatchWriter;
+    private LemmaProcessor lemmaProcessor;
+    private PageFetcher fetcher;
+    private PageWriter pageWriter;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Crawled {
+        public long pages;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        serverExecutor = Executors.newFixedThreadPool(64);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = pageHtml(exchange.getRequestURI().getPath()).getBytes(StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+        rootUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+        AtomicInteger ids = new AtomicInteger();
+        pageRepository = mock(PageRepository.class, withSettings().stubOnly());
+        when(pageRepository.save(any(Page.class))).thenAnswer(invocation -> {
+            Page page = invocation.getArgument(0);
+            page.setId(ids.incrementAndGet());
+            return page;
+        });
+        siteRepository = mock(SiteRepository.class, withSettings().stubOnly());
+        indexBatchWriter = mock(IndexBatchWriter.class, withSettings().stubOnly());
+        when(indexBatchWriter.insertMissingLemmas(anyInt(), anyCollection())).thenAnswer(invocation -> {
+            Map<String, Integer> lemmaIds = new HashMap<>();
+            for (Object lemma : (Collection<?>) invocation.getArgument(1)) {
+                lemmaIds.put((String) lemma, ids.incrementAndGet());
+            }
+            return lemmaIds;
+        });
+        InvertedIndex invertedIndex = new InvertedIndex(null, false);
+        lemmaProcessor = new LemmaProcessor(indexBatchWriter, invertedIndex);
+        fetcher = new PageFetcher(new AppConfig(), new SimpleMeterRegistry());
+        pageWriter = new PageWriter(pageRepository, mock(PageContentStore.class, withSettings().stubOnly()),
+                indexBatchWriter, lemmaProcessor, invertedIndex, new SiteRegistry(null), new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fetcher.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void crawl(Crawled crawled) {
+        Site site = new Site();
+        site.setUrl(rootUrl);
+        site.setName("benchmark");
+        site.setStatus(Status.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+
+        UrlFrontier frontier = new UrlFrontier(pages * 2);
+        SiteLemmaDictionary dictionary = new SiteLemmaDictionary(1, indexBatchWriter, 100);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SiteIndexerTask(rootUrl, site, siteRepository, frontier, dictionary,
+                    KnownPages.none(), fetcher, pageWriter));
+        } finally {
+            pool.shutdownNow();
+        }
+        crawled.pages += frontier.size();
+    }
+
+    private String pageHtml(String path) {
+        int n = path.startsWith("/p/") ? Integer.parseInt(path.substring(3)) : 0;
+        StringBuilder html = new StringBuilder("<html><head><title>Страница ").append(n)
+                .append("</title></head><body><p>Лошади бегут быстро, а лошадь красива. ")
+                .append("The quick brown fox jumps over the lazy dog.</p>");
+        for (int k = 1; k <= linksPerPage; k++) {
+            int child = n * linksPerPage + k;
+            if (child < pages) {
+                html.append("<a href=\"/p/").append(child).append("\">").append(child).append("</a>");
+            }
+        }
+        return html.append("</body></html>").toString();
+    }
+}
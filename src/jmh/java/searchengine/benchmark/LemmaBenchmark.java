@@ -0,0 +1,45 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.index.InvertedIndex;
+import searchengine.morphology.LemmaProcessor;
+import searchengine.repository.IndexBatchWriter;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * {@link LemmaProcessor#collectLemmas} on a Russian or English page of the given number of words, with the
+ * word cache warmed up as it is during a crawl.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmaBenchmark {
+
+    @Param({"ru", "en"})
+    private String language;
+
+    @Param({"1000", "10000"})
+    private int words;
+
+    private String text;
+    private LemmaProcessor lemmaProcessor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        text = Corpus.text(language, words, 1);
+        lemmaProcessor = new LemmaProcessor(mock(IndexBatchWriter.class), new InvertedIndex(null, false));
+        lemmaProcessor.collectLemmas(text);
+    }
+
+    @Benchmark
+    public Map<String, Integer> collectLemmas() {
+        return lemmaProcessor.collectLemmas(text);
+    }
+}
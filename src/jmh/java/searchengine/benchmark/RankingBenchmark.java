@@ -0,0 +1,82 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.index.InvertedIndex;
+import searchengine.index.PostingList;
+import searchengine.index.SearchHits;
+import searchengine.index.TopK;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intersection and scoring of a search over a synthetic in-memory index of one site, the work that
+ * intersectPagesForSite and calculateRelevance used to do against the database. Query lemma {@code i}
+ * occurs on a page with probability {@code 0.5 / 3^i}, with a rank of 1 to 10. {@code top} keeps the
+ * first result page, with and without an exact count; {@code all} ranks every match, as a full sort
+ * would, and always counts exactly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+
+    @Param({"10000", "100000"})
+    private int pages;
+
+    @Param({"2", "3"})
+    private int lemmas;
+
+    private List<PostingList.Postings> postings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InvertedIndex index = new InvertedIndex(null, true);
+        Random random = new Random(1);
+        List<String> query = new ArrayList<>();
+        for (int l = 0; l < lemmas; l++) {
+            query.add("лемма" + l);
+        }
+        for (int page = 1; page <= pages; page++) {
+            Map<String, Integer> lemmaIds = new HashMap<>();
+            Map<Integer, Float> ranks = new HashMap<>();
+            for (int l = 0; l < lemmas; l++) {
+                if (random.nextDouble() < 0.5 / Math.pow(3, l)) {
+                    lemmaIds.put(query.get(l), l + 1);
+                    ranks.put(l + 1, (float) (1 + random.nextInt(10)));
+                }
+            }
+            index.addPage(1, page, lemmaIds, ranks);
+        }
+        postings = new ArrayList<>();
+        for (PostingList list : index.find(query, 1).get(1)) {
+            postings.add(list.snapshot());
+        }
+    }
+
+    /**
+     * Kept apart so that only {@code top} runs once per counting mode.
+     */
+    @State(Scope.Benchmark)
+    public static class Counting {
+        @Param({"true", "false"})
+        private boolean exactCount;
+    }
+
+    @Benchmark
+    public SearchHits top(Counting counting) {
+        TopK top = new TopK(20);
+        InvertedIndex.collect(postings, top, counting.exactCount);
+        return top.drain();
+    }
+
+    @Benchmark
+    public SearchHits all() {
+        TopK top = new TopK(pages);
+        InvertedIndex.collect(postings, top, true);
+        return top.drain();
+    }
+}
@@ -0,0 +1,58 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.SnippetBuilder;
+import searchengine.services.TermMatcher;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snippet of one search result: {@code makeSnippet} over the plain text of a page of the given size with
+ * the matcher built for the query once, {@code makeSnippetAndMatcher} with the matcher built per call,
+ * and {@code highlight} of the finished fragment alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+
+    @Param({"500", "5000"})
+    private int words;
+
+    @Param({"1", "3"})
+    private int terms;
+
+    private String text;
+    private List<String> lemmas;
+    private String query;
+    private String fragment;
+    private TermMatcher matcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = Corpus.text("ru", words, 1);
+        lemmas = List.of("выставка", "библиотека", "премьера").subList(0, terms);
+        query = String.join(" ", List.of("выставки", "библиотеки", "премьеры").subList(0, terms));
+        matcher = SnippetBuilder.matcher(lemmas, query);
+        fragment = text.substring(0, Math.min(text.length(), 320));
+    }
+
+    @Benchmark
+    public String makeSnippet() {
+        return SnippetBuilder.makeSnippet(text, matcher);
+    }
+
+    @Benchmark
+    public String makeSnippetAndMatcher() {
+        return SnippetBuilder.makeSnippet(text, lemmas, query);
+    }
+
+    @Benchmark
+    public String highlight() {
+        return SnippetBuilder.highlight(fragment, matcher);
+    }
+}
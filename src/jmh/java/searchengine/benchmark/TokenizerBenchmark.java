@@ -0,0 +1,76 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.index.InvertedIndex;
+import searchengine.index.Positions;
+import searchengine.morphology.LemmaProcessor;
+import searchengine.morphology.WordCounts;
+import searchengine.repository.IndexBatchWriter;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Time and allocation per page of splitting {@link Corpus} text into words. {@code splitAndMatch} is the former
+ * lowercase, regex split and per-token Cyrillic matcher; {@code scan} is {@link WordCounts}. The
+ * {@code collectLemmas} benchmark adds the morphology lookups through a warm word cache, and
+ * {@code lemmaPositions} collects and encodes the word positions of every lemma as they are indexed. Run
+ * with {@code -prof gc} to see bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private static final Pattern CYR = Pattern.compile("\\p{IsCyrillic}");
+
+    @Param({"ru", "en"})
+    private String language;
+
+    @Param({"2000", "20000"})
+    private int words;
+
+    private String text;
+    private LemmaProcessor lemmaProcessor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        text = Corpus.text(language, words, 1);
+        lemmaProcessor = new LemmaProcessor(mock(IndexBatchWriter.class), new InvertedIndex(null, false));
+        lemmaProcessor.collectLemmas(text);
+    }
+
+    @Benchmark
+    public void splitAndMatch(Blackhole blackhole) {
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}]+")) {
+            if (word.isBlank()) continue;
+            blackhole.consume(word);
+            blackhole.consume(CYR.matcher(word).find());
+        }
+    }
+
+    @Benchmark
+    public WordCounts scan() {
+        return WordCounts.of(text);
+    }
+
+    @Benchmark
+    public Map<String, Integer> collectLemmas() {
+        return lemmaProcessor.collectLemmas(text);
+    }
+
+    @Benchmark
+    public void lemmaPositions(Blackhole blackhole) {
+        for (int[] positions : lemmaProcessor.lemmaPositions(WordCounts.of(text)).values()) {
+            blackhole.consume(Positions.encode(positions));
+        }
+    }
+}
@@ -13,6 +13,14 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class AppConfig {
     private List<SiteConfig> sites;
+    private boolean incremental = false;
+    private int lemmaFlushPages = 100;
+    private int maxUrlsPerSite = 1_000_000;
+    private int maxConcurrentFetches = 1000;
+    private int maxConcurrentFetchesPerSite = 50;
+    private CrawlerType crawler = CrawlerType.FORK_JOIN;
+    private PipelineSettings pipeline = new PipelineSettings();
+    private HttpSettings http = new HttpSettings();
 
     public List<SiteConfig> getSites() {
         return sites != null ? sites : List.of();
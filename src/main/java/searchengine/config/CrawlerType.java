@@ -0,0 +1,7 @@
+package searchengine.config;
+
+public enum CrawlerType {
+    FORK_JOIN,
+    PIPELINE,
+    VIRTUAL_THREADS
+}
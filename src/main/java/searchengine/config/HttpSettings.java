@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Data;
+
+@Data
+public class HttpSettings {
+    private String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36" +
+            " (HTML, like Gecko) Chrome/127.0.0.0 Safari/537.36";
+    private String referrer = "https://www.google.com";
+    private String acceptLanguage = "ru,en;q=0.9";
+    private int connectTimeoutMs = 10000;
+    private int readTimeoutMs = 30000;
+    private int maxIdleConnections = 64;
+    private int keepAliveSeconds = 300;
+    private int dnsCacheSeconds = 300;
+    private int maxBodyBytes = 2 * 1024 * 1024;
+}
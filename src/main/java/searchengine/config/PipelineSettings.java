@@ -0,0 +1,12 @@
+package searchengine.config;
+
+import lombok.Data;
+
+@Data
+public class PipelineSettings {
+    private StageSettings fetch = new StageSettings(16, 0);
+    private StageSettings parse = new StageSettings(2, 64);
+    private StageSettings lemmatize = new StageSettings(Runtime.getRuntime().availableProcessors(), 64);
+    private StageSettings persist = new StageSettings(4, 64);
+    private int reportIntervalSeconds = 30;
+}
@@ -0,0 +1,16 @@
+package searchengine.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class StageSettings {
+    private int threads;
+    private int queueCapacity;
+
+    public StageSettings(int threads, int queueCapacity) {
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -1,36 +1,54 @@
 package searchengine.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import searchengine.config.AppConfig;
 import searchengine.config.SiteConfig;
 import searchengine.dto.SimpleResponse;
+import searchengine.dto.search.SearchCacheStatistics;
+import searchengine.dto.search.SearchResultItem;
+import searchengine.dto.search.SearchStreamHeader;
+import searchengine.dto.statistics.CacheStatistics;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.IndexingService;
+import searchengine.services.SearchResultSink;
 import searchengine.services.SearchService;
 import searchengine.services.StatisticsService;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
+@Slf4j
 @RestController
 @RequestMapping("/api")
 public class ApiController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final IndexingService indexingService;
     private final StatisticsService statisticsService;
     private final SearchService searchService;
     private final AppConfig appConfig;
+    private final ObjectMapper objectMapper;
 
     @Autowired
     public ApiController(IndexingService indexingService,
                          StatisticsService statisticsService,
                          SearchService searchService,
-                         AppConfig appConfig) {
+                         AppConfig appConfig,
+                         ObjectMapper objectMapper) {
         this.indexingService = indexingService;
         this.statisticsService = statisticsService;
         this.searchService = searchService;
         this.appConfig = appConfig;
+        this.objectMapper = objectMapper;
     }
 
     @RequestMapping(value = "/startIndexing", method = {RequestMethod.GET, RequestMethod.POST})
@@ -59,10 +77,15 @@ public class ApiController {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    @GetMapping("/statistics/lemmaCache")
+    public ResponseEntity<CacheStatistics> lemmaCacheStatistics() {
+        return ResponseEntity.ok(statisticsService.getLemmaCacheStatistics());
+    }
+
     @GetMapping("/printSites")
     public ResponseEntity<List<SiteConfig>> printSites() {
         List<SiteConfig> sites = appConfig.getSites();
-        sites.forEach(site -> System.out.println(site.getUrl() + " — " + site.getName()));
+        sites.forEach(site -> log.info("{} — {}", site.getUrl(), site.getName()));
         return ResponseEntity.ok(sites);
     }
 
@@ -82,4 +105,67 @@ public class ApiController {
         }
         return ResponseEntity.ok(searchResponse);
     }
+
+    /**
+     * Same search as {@code /search}, written as NDJSON: a {@link SearchStreamHeader} line with the count or
+     * the error, then one {@link SearchResultItem} line per result as soon as its snippet is ready.
+     */
+    @GetMapping("/search/stream")
+    public ResponseEntity<StreamingResponseBody> searchStream(
+            @RequestParam String query,
+            @RequestParam(required = false) String site,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit) {
+        String siteUrl = site == null || site.isBlank() ? null : site;
+        StreamingResponseBody body = out ->
+                searchService.search(query, siteUrl, offset, limit, new NdjsonSink(out, objectMapper));
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    @GetMapping("/search/cache")
+    public ResponseEntity<SearchCacheStatistics> searchCacheStatistics() {
+        return ResponseEntity.ok(searchService.getCacheStatistics());
+    }
+
+    private static class NdjsonSink implements SearchResultSink {
+
+        private final OutputStream out;
+        private final ObjectMapper objectMapper;
+
+        NdjsonSink(OutputStream out, ObjectMapper objectMapper) {
+            this.out = out;
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public void count(int count, boolean approximate) {
+            SearchStreamHeader header = new SearchStreamHeader();
+            header.setResult(true);
+            header.setCount(count);
+            header.setApproximateCount(approximate);
+            write(header);
+        }
+
+        @Override
+        public void item(SearchResultItem item) {
+            write(item);
+        }
+
+        @Override
+        public void error(String error) {
+            SearchStreamHeader header = new SearchStreamHeader();
+            header.setError(error);
+            write(header);
+        }
+
+        private void write(Object line) {
+            try {
+                out.write(objectMapper.writeValueAsBytes(line));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
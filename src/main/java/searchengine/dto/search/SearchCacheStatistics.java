@@ -0,0 +1,14 @@
+package searchengine.dto.search;
+
+import lombok.Data;
+
+@Data
+public class SearchCacheStatistics {
+    private long size;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private double missRate;
+    private long evictions;
+    private long generation;
+}
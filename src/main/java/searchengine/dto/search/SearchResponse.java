@@ -10,6 +10,7 @@ import java.util.List;
 public class SearchResponse {
     private boolean result;
     private int count;
+    private boolean approximateCount;
     private List<SearchResultItem> data;
     private String error;
 }
@@ -0,0 +1,14 @@
+package searchengine.dto.search;
+
+import lombok.Data;
+
+/**
+ * First line of a streamed search: the match count, or the error when the search cannot run.
+ */
+@Data
+public class SearchStreamHeader {
+    private boolean result;
+    private int count;
+    private boolean approximateCount;
+    private String error;
+}
@@ -0,0 +1,27 @@
+package searchengine.dto.statistics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Data;
+
+@Data
+public class CacheStatistics {
+    private long size;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private double missRate;
+    private long evictions;
+
+    public static CacheStatistics of(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setSize(cache.estimatedSize());
+        statistics.setHits(stats.hitCount());
+        statistics.setMisses(stats.missCount());
+        statistics.setHitRate(stats.hitRate());
+        statistics.setMissRate(stats.missRate());
+        statistics.setEvictions(stats.evictionCount());
+        return statistics;
+    }
+}
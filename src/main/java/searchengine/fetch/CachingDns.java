@@ -0,0 +1,48 @@
+package searchengine.fetch;
+
+import okhttp3.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps successful lookups for a fixed time, so a crawl resolves each host once instead of once per page.
+ * Failed lookups are not cached.
+ */
+class CachingDns implements Dns {
+
+    private final Dns delegate;
+    private final long ttlNanos;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    CachingDns(Dns delegate, long ttlSeconds) {
+        this.delegate = delegate;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = System.nanoTime();
+        Entry entry = cache.get(hostname);
+        if (entry != null && now - entry.resolvedAt < ttlNanos) {
+            return entry.addresses;
+        }
+        List<InetAddress> addresses = List.copyOf(delegate.lookup(hostname));
+        cache.put(hostname, new Entry(addresses, now));
+        return addresses;
+    }
+
+    private static final class Entry {
+        private final List<InetAddress> addresses;
+        private final long resolvedAt;
+
+        private Entry(List<InetAddress> addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package searchengine.fetch;
+
+import lombok.Getter;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+@Getter
+public class FetchResult {
+
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    private final String charset;
+    private final String etag;
+    private final String lastModified;
+    private final byte[] body;
+
+    FetchResult(String url, int statusCode, String contentType, String charset,
+                String etag, String lastModified, byte[] body) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.charset = charset;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.body = body;
+    }
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    public boolean isHtml() {
+        return isHtml(contentType);
+    }
+
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+    }
+
+    static boolean isHtml(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.contains("text/html") || type.contains("application/xhtml+xml");
+    }
+}
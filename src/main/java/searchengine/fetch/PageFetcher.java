@@ -0,0 +1,147 @@
+package searchengine.fetch;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.*;
+import okio.*;
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfig;
+import searchengine.config.HttpSettings;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+
+/**
+ * HTTP client shared by all crawlers and single-page indexing. Connections are pooled and kept alive,
+ * HTTP/2 is negotiated where the server offers it, DNS answers are cached, and gzip/deflate bodies are
+ * decoded here. Only HTML bodies are downloaded; other content types return headers only. Every request is
+ * timed by host and status ({@code crawler.fetch}, with the exception name as status when it fails), and
+ * decoded body sizes are recorded in {@code crawler.fetch.bytes}.
+ */
+@Component
+public class PageFetcher {
+
+    private static final String ACCEPT = "text/html,application/xhtml+xml,application/xml;q=0.9," +
+            "image/webp,*/*;q=0.8";
+
+    private final HttpSettings settings;
+    private final OkHttpClient client;
+    private final MeterRegistry meterRegistry;
+
+    public PageFetcher(AppConfig appConfig, MeterRegistry meterRegistry) {
+        this.settings = appConfig.getHttp();
+        this.meterRegistry = meterRegistry;
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(settings.getMaxIdleConnections(),
+                        settings.getKeepAliveSeconds(), TimeUnit.SECONDS))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .dns(new CachingDns(Dns.SYSTEM, settings.getDnsCacheSeconds()))
+                .connectTimeout(settings.getConnectTimeoutMs(), TimeUnit.MILLISECONDS)
+                .readTimeout(settings.getReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .followRedirects(true)
+                .followSslRedirects(true)
+                .build();
+    }
+
+    public FetchResult fetch(String url) throws IOException {
+        return fetch(url, null, null);
+    }
+
+    public FetchResult fetch(String url, String etag, String lastModified) throws IOException {
+        Request.Builder request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", settings.getUserAgent())
+                .header("Accept", ACCEPT)
+                .header("Accept-Language", settings.getAcceptLanguage())
+                .header("Accept-Encoding", "gzip, deflate")
+                .header("Referer", settings.getReferrer());
+        if (etag != null) request.header("If-None-Match", etag);
+        if (lastModified != null) request.header("If-Modified-Since", lastModified);
+
+        String host = HttpUrl.get(url).host();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        FetchResult result;
+        try {
+            result = execute(request.build());
+        } catch (IOException | RuntimeException e) {
+            sample.stop(fetchTimer(host, e.getClass().getSimpleName()));
+            throw e;
+        }
+        sample.stop(fetchTimer(host, String.valueOf(result.getStatusCode())));
+        DistributionSummary.builder("crawler.fetch.bytes")
+                .baseUnit("bytes")
+                .tag("host", host)
+                .register(meterRegistry)
+                .record(result.getBody().length);
+        return result;
+    }
+
+    private FetchResult execute(Request request) throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            MediaType mediaType = body == null ? null : body.contentType();
+            Charset charset = mediaType == null ? null : mediaType.charset();
+            String contentType = response.header("Content-Type");
+
+            byte[] bytes = new byte[0];
+            if (body != null && response.code() != 304 && FetchResult.isHtml(contentType)) {
+                bytes = read(body, response.header("Content-Encoding"));
+            }
+            return new FetchResult(
+                    response.request().url().toString(),
+                    response.code(),
+                    contentType,
+                    charset == null ? null : charset.name(),
+                    response.header("ETag"),
+                    response.header("Last-Modified"),
+                    bytes);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    private Timer fetchTimer(String host, String status) {
+        return Timer.builder("crawler.fetch")
+                .tag("host", host)
+                .tag("status", status)
+                .register(meterRegistry);
+    }
+
+    private byte[] read(ResponseBody body, String encoding) throws IOException {
+        try (BufferedSource source = decode(body.source(), encoding)) {
+            long limit = settings.getMaxBodyBytes();
+            source.request(limit);
+            Buffer buffer = source.getBuffer();
+            return buffer.readByteArray(Math.min(buffer.size(), limit));
+        }
+    }
+
+    private static BufferedSource decode(BufferedSource source, String encoding) throws IOException {
+        String coding = encoding == null ? "" : encoding.trim().toLowerCase(Locale.ROOT);
+        switch (coding) {
+            case "gzip":
+            case "x-gzip":
+                return Okio.buffer(new GzipSource(source));
+            case "deflate":
+                boolean zlib = source.request(2) && isZlibHeader(source.getBuffer().getByte(0),
+                        source.getBuffer().getByte(1));
+                return Okio.buffer(new InflaterSource(source, new Inflater(!zlib)));
+            default:
+                return source;
+        }
+    }
+
+    private static boolean isZlibHeader(byte cmf, byte flg) {
+        return (cmf & 0x0f) == 8 && (((cmf & 0xff) << 8) | (flg & 0xff)) % 31 == 0;
+    }
+}
@@ -0,0 +1,24 @@
+package searchengine.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the searchable index. Advanced whenever a site or a page is reindexed, and during a crawl
+ * every time the site's lemma dictionary flushes, so anything derived from the index under an older
+ * version is known to be stale at most {@code lemma-flush-pages} pages late.
+ */
+@Component
+public class IndexGeneration {
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public long current() {
+        return generation.get();
+    }
+
+    public void advance() {
+        generation.incrementAndGet();
+    }
+}
@@ -0,0 +1,264 @@
+package searchengine.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.index.PostingList.Postings;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resident copy of the page_index table, word positions included, as posting lists per site and lemma. It
+ * is loaded once all
+ * beans are created, before the web server accepts requests, and every write of index rows is mirrored
+ * into it. While it is disabled or failed to load, search falls back to the database.
+ */
+@Slf4j
+@Component
+public class InvertedIndex implements SmartInitializingSingleton {
+
+    private static final int LOAD_LEMMAS_PER_QUERY = 5_000;
+    private static final int CANCEL_CHECK_MASK = 4095;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private volatile boolean ready;
+
+    private final Map<String, Map<Integer, PostingList>> byLemma = new ConcurrentHashMap<>();
+    private final Map<Integer, PostingList> byId = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> documents = new ConcurrentHashMap<>();
+
+    public InvertedIndex(JdbcTemplate jdbcTemplate, @Value("${search.inMemoryIndex:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) return;
+        try {
+            long started = System.currentTimeMillis();
+            long postings = load();
+            ready = true;
+            log.info("Loaded {} postings of {} lemmas into the in-memory index in {} ms",
+                    postings, byId.size(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.warn("In-memory index is not available, search will use the database", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void addPage(int siteId, int pageId, Map<String, Integer> lemmaIds, Map<Integer, Float> ranks) {
+        addPage(siteId, pageId, lemmaIds, ranks, Map.of());
+    }
+
+    /**
+     * Adds a page with the {@link Positions}-encoded word positions of its lemmas by lemma id.
+     */
+    public void addPage(int siteId, int pageId, Map<String, Integer> lemmaIds, Map<Integer, Float> ranks,
+                        Map<Integer, byte[]> positions) {
+        if (!enabled || ranks.isEmpty()) return;
+        lemmaIds.forEach((lemma, lemmaId) -> {
+            Float rank = ranks.get(lemmaId);
+            if (rank != null) {
+                list(siteId, lemmaId, lemma).add(pageId, rank, positions.get(lemmaId));
+            }
+        });
+        documents(siteId).incrementAndGet();
+    }
+
+    public void removePage(int siteId, int pageId, Collection<Integer> lemmaIds) {
+        if (!enabled) return;
+        boolean removed = false;
+        for (Integer lemmaId : lemmaIds) {
+            PostingList list = byId.get(lemmaId);
+            if (list != null && list.remove(pageId)) {
+                removed = true;
+            }
+        }
+        if (removed) {
+            documents(siteId).decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes many pages in one pass over the lists of their site, for pages whose lemmas are not at hand;
+     * a single page with known lemmas is cheaper to remove through {@link #removePage}.
+     */
+    public void removePages(int siteId, Collection<Integer> pageIds) {
+        if (!enabled || pageIds.isEmpty()) return;
+        Set<Integer> ids = new HashSet<>(pageIds);
+        Set<Integer> removed = new HashSet<>();
+        for (PostingList list : byId.values()) {
+            if (list.getSiteId() == siteId) {
+                list.removeAll(ids, removed);
+            }
+        }
+        documents(siteId).addAndGet(-removed.size());
+    }
+
+    public void removeEmptyLists(int siteId) {
+        byId.values().removeIf(list -> list.getSiteId() == siteId && list.size() == 0 && unlink(list));
+    }
+
+    public void removeSite(int siteId) {
+        byId.values().removeIf(list -> list.getSiteId() == siteId && unlink(list));
+        documents.remove(siteId);
+    }
+
+    public Map<Integer, List<PostingList>> find(Collection<String> lemmas, Integer siteId) {
+        Map<Integer, List<PostingList>> bySite = new HashMap<>();
+        for (String lemma : lemmas) {
+            Map<Integer, PostingList> sites = byLemma.get(lemma);
+            if (sites == null) continue;
+            for (PostingList list : sites.values()) {
+                if (siteId == null || list.getSiteId() == siteId) {
+                    bySite.computeIfAbsent(list.getSiteId(), k -> new ArrayList<>()).add(list);
+                }
+            }
+        }
+        return bySite;
+    }
+
+    /**
+     * Decoded word positions of the given lemmas on the given pages, by page and then lemma; pages and
+     * lemmas without positions are left out.
+     */
+    public Map<Integer, Map<String, int[]>> positions(Collection<Integer> pageIds, Map<Integer, String> lemmaById) {
+        Map<Integer, Map<String, int[]>> byPage = new HashMap<>();
+        lemmaById.forEach((lemmaId, lemma) -> {
+            PostingList list = byId.get(lemmaId);
+            if (list == null) return;
+            Postings postings = list.snapshot();
+            for (int pageId : pageIds) {
+                int i = postings.indexOf(pageId);
+                byte[] encoded = i < 0 ? null : postings.positionsAt(i);
+                if (encoded != null) {
+                    byPage.computeIfAbsent(pageId, k -> new HashMap<>()).put(lemma, Positions.decode(encoded));
+                }
+            }
+        });
+        return byPage;
+    }
+
+    public int documentCount(Integer siteId) {
+        if (siteId != null) {
+            AtomicInteger count = documents.get(siteId);
+            return count == null ? 0 : count.get();
+        }
+        return documents.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    /**
+     * Offers every page present in all lists to {@code top}, scored by the sum of its ranks, and returns how
+     * many pages matched. Candidates come from the shortest list and the others are probed with galloping
+     * search. Unless {@code exactCount} is set, a candidate is dropped as soon as its partial score plus the
+     * maximum ranks of the lists not probed yet cannot enter {@code top}; dropped pages are not counted.
+     * An interrupted thread stops early with {@code top} marked as pruned.
+     */
+    public static int collect(List<Postings> lists, TopK top, boolean exactCount) {
+        if (lists.isEmpty()) return 0;
+        Postings[] ordered = lists.toArray(new Postings[0]);
+        Arrays.sort(ordered, Comparator.comparingInt(Postings::size));
+        Postings shortest = ordered[0];
+        float bestPossible = bound(0f, ordered, 0);
+        int[] cursors = new int[ordered.length];
+        int matched = 0;
+
+        candidates:
+        for (int i = 0; i < shortest.size(); i++) {
+            if ((i & CANCEL_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                top.markPruned();
+                break;
+            }
+            int pageId = shortest.pageAt(i);
+            if (!exactCount && !top.accepts(bestPossible, pageId)) {
+                top.markPruned();
+                break;
+            }
+            float score = shortest.rankAt(i);
+            for (int l = 1; l < ordered.length; l++) {
+                if (!exactCount && !top.accepts(bound(score, ordered, l), pageId)) {
+                    top.markPruned();
+                    continue candidates;
+                }
+                Postings other = ordered[l];
+                int pos = other.advance(cursors[l], pageId);
+                cursors[l] = pos;
+                if (pos == other.size()) break candidates;
+                if (other.pageAt(pos) != pageId) continue candidates;
+                score += other.rankAt(pos);
+            }
+            matched++;
+            top.offer(pageId, score);
+        }
+        return matched;
+    }
+
+    /**
+     * Adds the maximum ranks in the same order as the scores themselves are summed, so rounding can never
+     * make the bound smaller than a score it covers.
+     */
+    private static float bound(float partial, Postings[] lists, int from) {
+        float bound = partial;
+        for (int l = from; l < lists.length; l++) {
+            bound += lists[l].maxRank();
+        }
+        return bound;
+    }
+
+    private long load() {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS lo, MAX(id) AS hi FROM lemma");
+        if (bounds.get("lo") == null) return 0;
+        int lo = ((Number) bounds.get("lo")).intValue();
+        int hi = ((Number) bounds.get("hi")).intValue();
+
+        Map<Integer, BitSet> pagesBySite = new HashMap<>();
+        long[] loaded = new long[1];
+        for (int from = lo; from <= hi; from += LOAD_LEMMAS_PER_QUERY) {
+            jdbcTemplate.query("SELECT l.site_id, l.id, l.lemma, pi.page_id, pi.rank_value, pi.positions " +
+                            "FROM page_index pi " +
+                            "JOIN lemma l ON l.id = pi.lemma_id WHERE pi.lemma_id >= ? AND pi.lemma_id < ? " +
+                            "ORDER BY pi.lemma_id, pi.page_id",
+                    rs -> {
+                        int siteId = rs.getInt(1);
+                        int pageId = rs.getInt(4);
+                        list(siteId, rs.getInt(2), rs.getString(3)).add(pageId, rs.getFloat(5), rs.getBytes(6));
+                        pagesBySite.computeIfAbsent(siteId, k -> new BitSet()).set(pageId);
+                        loaded[0]++;
+                    },
+                    from, from + LOAD_LEMMAS_PER_QUERY);
+        }
+        pagesBySite.forEach((siteId, pages) -> documents(siteId).set(pages.cardinality()));
+        return loaded[0];
+    }
+
+    private PostingList list(int siteId, int lemmaId, String lemma) {
+        PostingList list = byId.get(lemmaId);
+        if (list != null) return list;
+        return byId.computeIfAbsent(lemmaId, id -> {
+            PostingList created = new PostingList(siteId, id, lemma);
+            byLemma.computeIfAbsent(lemma, k -> new ConcurrentHashMap<>()).put(siteId, created);
+            return created;
+        });
+    }
+
+    private boolean unlink(PostingList list) {
+        Map<Integer, PostingList> sites = byLemma.get(list.getLemma());
+        if (sites != null) {
+            sites.remove(list.getSiteId(), list);
+        }
+        return true;
+    }
+
+    private AtomicInteger documents(int siteId) {
+        return documents.computeIfAbsent(siteId, k -> new AtomicInteger());
+    }
+}
@@ -0,0 +1,119 @@
+package searchengine.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Word positions of a lemma on a page, counted from 0 over all words of the page text. They are stored
+ * in page_index as the first position followed by the gaps to each next one, every number written as
+ * an unsigned varint of 7 bits per byte, so most positions take one or two bytes.
+ */
+public final class Positions {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int[] NONE = new int[0];
+
+    private Positions() {
+    }
+
+    /**
+     * Encodes ascending positions.
+     */
+    public static byte[] encode(int[] positions) {
+        if (positions.length == 0) return EMPTY;
+        byte[] out = new byte[positions.length * 5];
+        int size = 0;
+        int previous = 0;
+        for (int position : positions) {
+            int value = position - previous;
+            previous = position;
+            while ((value & ~0x7f) != 0) {
+                out[size++] = (byte) (value & 0x7f | 0x80);
+                value >>>= 7;
+            }
+            out[size++] = (byte) value;
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    public static int[] decode(byte[] encoded) {
+        if (encoded == null || encoded.length == 0) return NONE;
+        int count = 0;
+        for (byte b : encoded) {
+            if (b >= 0) count++;
+        }
+        int[] positions = new int[count];
+        int value = 0;
+        int shift = 0;
+        int previous = 0;
+        int n = 0;
+        for (byte b : encoded) {
+            value |= (b & 0x7f) << shift;
+            if (b < 0) {
+                shift += 7;
+                continue;
+            }
+            previous += value;
+            positions[n++] = previous;
+            value = 0;
+            shift = 0;
+        }
+        return positions;
+    }
+
+    /**
+     * Whether a page has every lemma of {@code phrase} at its offset from one common start. A phrase maps
+     * each lemma to its offsets in the phrase; words without a lemma only leave gaps in the offsets.
+     */
+    public static boolean containsPhrase(Map<String, int[]> page, Map<String, int[]> phrase) {
+        String anchor = null;
+        for (String lemma : phrase.keySet()) {
+            int[] positions = page.get(lemma);
+            if (positions == null) return false;
+            if (anchor == null || positions.length < page.get(anchor).length) {
+                anchor = lemma;
+            }
+        }
+        if (anchor == null) return true;
+
+        int anchorOffset = phrase.get(anchor)[0];
+        starts:
+        for (int position : page.get(anchor)) {
+            int start = position - anchorOffset;
+            if (start < 0) continue;
+            for (Map.Entry<String, int[]> term : phrase.entrySet()) {
+                int[] positions = page.get(term.getKey());
+                for (int offset : term.getValue()) {
+                    if (Arrays.binarySearch(positions, start + offset) < 0) continue starts;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Smallest distance between the first and the last word of a stretch of text holding one position of
+     * every list, or -1 when a list is empty.
+     */
+    public static int minSpan(Collection<int[]> lists) {
+        int[][] heads = lists.toArray(new int[0][]);
+        int[] cursors = new int[heads.length];
+        for (int[] list : heads) {
+            if (list.length == 0) return -1;
+        }
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int min = 0;
+            int max = Integer.MIN_VALUE;
+            for (int l = 0; l < heads.length; l++) {
+                int position = heads[l][cursors[l]];
+                if (position < heads[min][cursors[min]]) min = l;
+                max = Math.max(max, position);
+            }
+            best = Math.min(best, max - heads[min][cursors[min]]);
+            if (++cursors[min] == heads[min].length) return best;
+        }
+    }
+}
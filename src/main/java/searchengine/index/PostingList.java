@@ -0,0 +1,228 @@
+package searchengine.index;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Pages of one site that contain one lemma, as ascending page ids with the lemma rank and the
+ * {@link Positions}-encoded word positions of the lemma on each page. Readers take an immutable {@link Postings} snapshot without locking. Appending a page id larger than
+ * all present ones writes past the published size of the current arrays, so it is amortized O(1);
+ * any other change copies the arrays.
+ */
+public final class PostingList {
+
+    private static final Postings EMPTY = new Postings(new int[0], new float[0], new byte[0][], 0, 0f);
+
+    private final int siteId;
+    private final int lemmaId;
+    private final String lemma;
+    private volatile Postings postings = EMPTY;
+
+    PostingList(int siteId, int lemmaId, String lemma) {
+        this.siteId = siteId;
+        this.lemmaId = lemmaId;
+        this.lemma = lemma;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public int getLemmaId() {
+        return lemmaId;
+    }
+
+    public String getLemma() {
+        return lemma;
+    }
+
+    public int size() {
+        return postings.size;
+    }
+
+    public Postings snapshot() {
+        return postings;
+    }
+
+    synchronized void add(int pageId, float rank, byte[] positions) {
+        Postings current = postings;
+        int size = current.size;
+        if (size == 0 || current.pages[size - 1] < pageId) {
+            if (size < current.pages.length) {
+                current.pages[size] = pageId;
+                current.ranks[size] = rank;
+                current.positions[size] = positions;
+                postings = new Postings(current.pages, current.ranks, current.positions, size + 1,
+                        Math.max(current.maxRank, rank));
+                return;
+            }
+            insert(current, size, pageId, rank, positions);
+            return;
+        }
+
+        int pos = Arrays.binarySearch(current.pages, 0, size, pageId);
+        if (pos >= 0) {
+            float[] ranks = Arrays.copyOf(current.ranks, current.ranks.length);
+            byte[][] copied = Arrays.copyOf(current.positions, current.positions.length);
+            ranks[pos] = rank;
+            copied[pos] = positions;
+            postings = Postings.of(Arrays.copyOf(current.pages, current.pages.length), ranks, copied, size);
+        } else {
+            insert(current, -pos - 1, pageId, rank, positions);
+        }
+    }
+
+    synchronized boolean remove(int pageId) {
+        Postings current = postings;
+        int pos = Arrays.binarySearch(current.pages, 0, current.size, pageId);
+        if (pos < 0) return false;
+
+        int[] pages = new int[current.size - 1];
+        float[] ranks = new float[current.size - 1];
+        byte[][] positions = new byte[current.size - 1][];
+        System.arraycopy(current.pages, 0, pages, 0, pos);
+        System.arraycopy(current.ranks, 0, ranks, 0, pos);
+        System.arraycopy(current.positions, 0, positions, 0, pos);
+        System.arraycopy(current.pages, pos + 1, pages, pos, current.size - pos - 1);
+        System.arraycopy(current.ranks, pos + 1, ranks, pos, current.size - pos - 1);
+        System.arraycopy(current.positions, pos + 1, positions, pos, current.size - pos - 1);
+        postings = Postings.of(pages, ranks, positions, pages.length);
+        return true;
+    }
+
+    synchronized int removeAll(Set<Integer> pageIds, Set<Integer> removedPages) {
+        Postings current = postings;
+        int[] pages = new int[current.size];
+        float[] ranks = new float[current.size];
+        byte[][] positions = new byte[current.size][];
+        int kept = 0;
+        for (int i = 0; i < current.size; i++) {
+            int pageId = current.pages[i];
+            if (pageIds.contains(pageId)) {
+                removedPages.add(pageId);
+            } else {
+                pages[kept] = pageId;
+                ranks[kept] = current.ranks[i];
+                positions[kept] = current.positions[i];
+                kept++;
+            }
+        }
+        int removed = current.size - kept;
+        if (removed > 0) {
+            postings = Postings.of(pages, ranks, positions, kept);
+        }
+        return removed;
+    }
+
+    private void insert(Postings current, int pos, int pageId, float rank, byte[] positions) {
+        int size = current.size;
+        int capacity = Math.max(4, size + (size >> 1) + 1);
+        int[] pages = new int[capacity];
+        float[] ranks = new float[capacity];
+        byte[][] positionArrays = new byte[capacity][];
+        System.arraycopy(current.pages, 0, pages, 0, pos);
+        System.arraycopy(current.ranks, 0, ranks, 0, pos);
+        System.arraycopy(current.positions, 0, positionArrays, 0, pos);
+        pages[pos] = pageId;
+        ranks[pos] = rank;
+        positionArrays[pos] = positions;
+        System.arraycopy(current.pages, pos, pages, pos + 1, size - pos);
+        System.arraycopy(current.ranks, pos, ranks, pos + 1, size - pos);
+        System.arraycopy(current.positions, pos, positionArrays, pos + 1, size - pos);
+        postings = new Postings(pages, ranks, positionArrays, size + 1, Math.max(current.maxRank, rank));
+    }
+
+    public static final class Postings {
+        private final int[] pages;
+        private final float[] ranks;
+        private final byte[][] positions;
+        private final int size;
+        private final float maxRank;
+
+        private Postings(int[] pages, float[] ranks, byte[][] positions, int size, float maxRank) {
+            this.pages = pages;
+            this.ranks = ranks;
+            this.positions = positions;
+            this.size = size;
+            this.maxRank = maxRank;
+        }
+
+        /**
+         * Wraps arrays that are not shared with any posting list; {@code pages} must be ascending.
+         */
+        public static Postings of(int[] pages, float[] ranks, int size) {
+            return of(pages, ranks, null, size);
+        }
+
+        /**
+         * Same, with the encoded word positions of each page, or null when they are not known.
+         */
+        public static Postings of(int[] pages, float[] ranks, byte[][] positions, int size) {
+            float max = 0f;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, ranks[i]);
+            }
+            return new Postings(pages, ranks, positions, size, max);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int pageAt(int i) {
+            return pages[i];
+        }
+
+        public float rankAt(int i) {
+            return ranks[i];
+        }
+
+        /**
+         * Encoded word positions of the lemma on the page at {@code i}, or null when they are not known.
+         */
+        public byte[] positionsAt(int i) {
+            return positions == null ? null : positions[i];
+        }
+
+        /**
+         * Index of {@code pageId} in this snapshot, or a negative number when the page is not in it.
+         */
+        public int indexOf(int pageId) {
+            return Arrays.binarySearch(pages, 0, size, pageId);
+        }
+
+        /**
+         * Upper bound of the ranks in this snapshot, used to skip pages that cannot reach the top results.
+         */
+        public float maxRank() {
+            return maxRank;
+        }
+
+        /**
+         * Index of the first page id {@code >= pageId} at or after {@code from}, found by doubling the step
+         * and then bisecting, so a walk over a long list costs O(log gap) per probe.
+         */
+        public int advance(int from, int pageId) {
+            if (from >= size || pages[from] >= pageId) return from;
+            int lo = from;
+            int step = 1;
+            int hi = from + 1;
+            while (hi < size && pages[hi] < pageId) {
+                lo = hi;
+                step <<= 1;
+                hi = from + step;
+            }
+            hi = Math.min(hi, size);
+            lo++;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (pages[mid] < pageId) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
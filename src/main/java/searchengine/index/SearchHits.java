@@ -0,0 +1,12 @@
+package searchengine.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SearchHits {
+    private final int[] pageIds;
+    private final float[] scores;
+    private final int size;
+}
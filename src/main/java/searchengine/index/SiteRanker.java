@@ -0,0 +1,129 @@
+package searchengine.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.index.PostingList.Postings;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ranks the posting lists of several sites at once. Every site is collected into its own top-K on a
+ * bounded search pool, and the per-site lists are merged into the global ranking. Sites that are not done
+ * by the per-query deadline are cancelled and left out; the count is then reported as approximate and
+ * the ranking as timed out, so that it is not kept as the answer to the query. A single site is ranked on
+ * the calling thread without a deadline.
+ */
+@Slf4j
+@Component
+public class SiteRanker {
+
+    private final ExecutorService executor;
+    private final long deadlineMillis;
+
+    @Autowired
+    public SiteRanker(@Value("${search.parallelism:0}") int parallelism,
+                      @Value("${search.deadlineMillis:500}") long deadlineMillis) {
+        this(searchPool(parallelism), deadlineMillis);
+    }
+
+    public SiteRanker(ExecutorService executor, long deadlineMillis) {
+        this.executor = executor;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    private static ExecutorService searchPool(int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 16),
+                r -> {
+                    Thread thread = new Thread(r, "search-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public Ranking rank(Map<Integer, List<Postings>> bySite, int k, boolean exactCount) {
+        if (bySite.size() <= 1) {
+            TopK top = new TopK(k);
+            int count = 0;
+            for (List<Postings> lists : bySite.values()) {
+                count += InvertedIndex.collect(lists, top, exactCount);
+            }
+            return new Ranking(top.drain(), count, top.isPruned(), false);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        Map<Integer, Future<SiteResult>> futures = new LinkedHashMap<>();
+        bySite.forEach((siteId, lists) -> futures.put(siteId, executor.submit(() -> {
+            TopK top = new TopK(k);
+            int count = InvertedIndex.collect(lists, top, exactCount);
+            return new SiteResult(top.drain(), count, top.isPruned());
+        })));
+
+        TopK merged = new TopK(k);
+        int count = 0;
+        boolean approximate = false;
+        boolean timedOut = false;
+        for (Map.Entry<Integer, Future<SiteResult>> entry : futures.entrySet()) {
+            SiteResult result = await(entry.getKey(), entry.getValue(), deadline);
+            if (result == null) {
+                timedOut = true;
+                continue;
+            }
+            SearchHits hits = result.hits();
+            for (int i = 0; i < hits.getSize(); i++) {
+                merged.offer(hits.getPageIds()[i], hits.getScores()[i]);
+            }
+            count += result.count();
+            approximate |= result.pruned();
+        }
+        return new Ranking(merged.drain(), count, approximate || timedOut, timedOut);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static SiteResult await(int siteId, Future<SiteResult> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Search in site {} missed the deadline and was left out", siteId);
+            return null;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search in site " + siteId + " failed", e.getCause());
+        }
+    }
+
+    private record SiteResult(SearchHits hits, int count, boolean pruned) {
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Ranking {
+        private final SearchHits hits;
+        private final int count;
+        private final boolean approximate;
+        /**
+         * Whether some site missed the deadline and is missing from the hits.
+         */
+        private final boolean timedOut;
+    }
+}
@@ -0,0 +1,172 @@
+package searchengine.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.model.Site;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resident list of indexed sites with their page and lemma counts, so that search and statistics resolve
+ * sites and corpus sizes without querying the database. The indexer keeps the counters current on every
+ * page written or removed and every lemma row created or deleted, and persists them on the site row when
+ * a site finishes, is purged or is stopped. At startup the sites and their counters are read back from the
+ * site table; only sites without stored counters are counted.
+ */
+@Slf4j
+@Component
+public class SiteRegistry implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Integer, SiteEntry> byId = new ConcurrentHashMap<>();
+    private final Map<String, SiteEntry> byUrl = new ConcurrentHashMap<>();
+
+    public SiteRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            Set<Integer> uncounted = new HashSet<>();
+            jdbcTemplate.query("SELECT id, url, name, page_count, lemma_count FROM site",
+                    rs -> {
+                        SiteEntry site = new SiteEntry(rs.getInt("id"), rs.getString("url"), rs.getString("name"));
+                        site.pages.set(rs.getInt("page_count"));
+                        site.lemmas.set(rs.getInt("lemma_count"));
+                        if (rs.getObject("page_count") == null || rs.getObject("lemma_count") == null) {
+                            uncounted.add(site.id);
+                        }
+                        put(site);
+                    });
+            for (int siteId : uncounted) {
+                recount(siteId);
+            }
+            log.info("Loaded {} sites into the site registry, {} of them counted", byId.size(), uncounted.size());
+        } catch (RuntimeException e) {
+            log.warn("Site registry could not be loaded, it will only know sites indexed from now on", e);
+        }
+    }
+
+    public void register(Site site) {
+        SiteEntry current = byId.get(site.getId());
+        if (current != null && current.url.equals(site.getUrl()) && current.name.equals(site.getName())) return;
+        SiteEntry entry = new SiteEntry(site.getId(), site.getUrl(), site.getName());
+        if (current != null) {
+            byUrl.remove(current.url, current);
+            entry.pages.set(current.pages.get());
+            entry.lemmas.set(current.lemmas.get());
+        }
+        put(entry);
+    }
+
+    public Optional<SiteEntry> find(int siteId) {
+        return Optional.ofNullable(byId.get(siteId));
+    }
+
+    public Optional<SiteEntry> findByUrl(String url) {
+        return Optional.ofNullable(byUrl.get(url));
+    }
+
+    public void addPages(int siteId, int delta) {
+        find(siteId).ifPresent(site -> site.pages.addAndGet(delta));
+    }
+
+    public void addLemmas(int siteId, int delta) {
+        find(siteId).ifPresent(site -> site.lemmas.addAndGet(delta));
+    }
+
+    /**
+     * Empties the counters of a site whose pages and lemmas were all deleted.
+     */
+    public void clear(int siteId) {
+        find(siteId).ifPresent(site -> {
+            site.pages.set(0);
+            site.lemmas.set(0);
+        });
+        persist(siteId);
+    }
+
+    /**
+     * Counts the pages and lemmas of one site in the database. Used where counting is cheaper than
+     * tracking, for a site without stored counters and after a single page was reindexed.
+     */
+    public void recount(int siteId) {
+        find(siteId).ifPresent(site -> {
+            site.pages.set(jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM page WHERE site_id = ?", Integer.class, siteId));
+            site.lemmas.set(jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM lemma WHERE site_id = ?", Integer.class, siteId));
+        });
+    }
+
+    public void persist(int siteId) {
+        find(siteId).ifPresent(site -> jdbcTemplate.update(
+                "UPDATE site SET page_count = ?, lemma_count = ? WHERE id = ?",
+                site.getPages(), site.getLemmas(), siteId));
+    }
+
+    @PreDestroy
+    public void persistAll() {
+        try {
+            byId.keySet().forEach(this::persist);
+        } catch (RuntimeException e) {
+            log.warn("Site counters could not be saved", e);
+        }
+    }
+
+    /**
+     * Pages of one site, or of all sites when {@code siteId} is null.
+     */
+    public long pageCount(Integer siteId) {
+        if (siteId != null) {
+            return find(siteId).map(SiteEntry::getPages).orElse(0);
+        }
+        return byId.values().stream().mapToLong(SiteEntry::getPages).sum();
+    }
+
+    private void put(SiteEntry entry) {
+        byId.put(entry.id, entry);
+        byUrl.put(entry.url, entry);
+    }
+
+    public static final class SiteEntry {
+        private final int id;
+        private final String url;
+        private final String name;
+        private final AtomicInteger pages = new AtomicInteger();
+        private final AtomicInteger lemmas = new AtomicInteger();
+
+        SiteEntry(int id, String url, String name) {
+            this.id = id;
+            this.url = url;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPages() {
+            return pages.get();
+        }
+
+        public int getLemmas() {
+            return lemmas.get();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package searchengine.index;
+
+import java.util.Arrays;
+
+/**
+ * The best {@code k} pages offered so far, by descending score and then ascending page id. Kept as a
+ * binary min-heap over primitive arrays whose root is the page that would be evicted next.
+ */
+public final class TopK {
+
+    private final int k;
+    private int[] pages;
+    private float[] scores;
+    private int size;
+    private boolean pruned;
+
+    public TopK(int k) {
+        this.k = Math.max(k, 0);
+        int capacity = Math.min(this.k, 1024);
+        this.pages = new int[capacity];
+        this.scores = new float[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether a page with this score, or with any score up to this bound, could still enter the heap.
+     */
+    public boolean accepts(float score, int pageId) {
+        if (size < k) return true;
+        return k > 0 && better(score, pageId, scores[0], pages[0]);
+    }
+
+    public void offer(int pageId, float score) {
+        if (size < k) {
+            if (size == pages.length) {
+                int capacity = (int) Math.min(k, Math.max(4L, pages.length * 2L));
+                pages = Arrays.copyOf(pages, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            pages[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (k > 0 && better(score, pageId, scores[0], pages[0])) {
+            pages[0] = pageId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    void markPruned() {
+        pruned = true;
+    }
+
+    /**
+     * Whether some candidate pages were skipped without checking that they match, so the number of
+     * matches reported alongside is a lower bound.
+     */
+    public boolean isPruned() {
+        return pruned;
+    }
+
+    /**
+     * The collected pages, best first. The heap is left empty.
+     */
+    public SearchHits drain() {
+        int count = size;
+        int[] sortedPages = new int[count];
+        float[] sortedScores = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sortedPages[i] = pages[0];
+            sortedScores[i] = scores[0];
+            size--;
+            pages[0] = pages[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return new SearchHits(sortedPages, sortedScores, count);
+    }
+
+    private static boolean better(float score, int pageId, float otherScore, int otherPageId) {
+        return score > otherScore || (score == otherScore && pageId < otherPageId);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(scores[parent], pages[parent], scores[i], pages[i])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && better(scores[worst], pages[worst], scores[left], pages[left])) worst = left;
+            if (right < size && better(scores[worst], pages[worst], scores[right], pages[right])) worst = right;
+            if (worst == i) return;
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int page = pages[a];
+        pages[a] = pages[b];
+        pages[b] = page;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -9,7 +9,10 @@ import org.hibernate.annotations.OnDeleteAction;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "lemma")
+@Table(
+        name = "lemma",
+        uniqueConstraints = @UniqueConstraint(name = "uq_lemma_site", columnNames = {"site_id", "lemma"})
+)
 @Getter
 @Setter
 @NoArgsConstructor
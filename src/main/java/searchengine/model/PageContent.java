@@ -0,0 +1,41 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+
+/**
+ * Deflate-compressed HTML, plain text and outgoing links of a page, kept apart from {@link Page} so that
+ * listing, scoring and statistics never read page bodies. The links let a recrawl follow a page that
+ * answered 304 without reading or parsing its HTML. Rows are written and read through
+ * {@link searchengine.repository.PageContentStore}.
+ */
+@Entity
+@Table(name = "page_content")
+@Getter
+@Setter
+@NoArgsConstructor
+public class PageContent {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "page_id", foreignKey = @ForeignKey(name = "fk_content_page"))
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Page page;
+
+    @Column(name = "html", columnDefinition = "MEDIUMBLOB", nullable = false)
+    private byte[] html;
+
+    @Column(name = "plain_text", columnDefinition = "MEDIUMBLOB")
+    private byte[] text;
+
+    @Column(name = "links", columnDefinition = "MEDIUMBLOB")
+    private byte[] links;
+}
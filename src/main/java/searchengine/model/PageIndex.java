@@ -29,4 +29,10 @@ public class PageIndex {
 
     @Column(name = "rank_value", nullable = false)
     private float rank;
+
+    /**
+     * Word positions of the lemma on the page, encoded by {@link searchengine.index.Positions}.
+     */
+    @Column(name = "positions", columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
 }
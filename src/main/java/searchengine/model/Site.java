@@ -32,4 +32,10 @@ public class Site {
 
     @Column(columnDefinition = "VARCHAR(255)", nullable = false)
     private String name;
+
+    @Column(name = "page_count", insertable = false, updatable = false)
+    private Integer pageCount;
+
+    @Column(name = "lemma_count", insertable = false, updatable = false)
+    private Integer lemmaCount;
 }
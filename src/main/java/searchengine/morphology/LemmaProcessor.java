@@ -1,82 +1,142 @@
 package searchengine.morphology;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.Jsoup;
 import org.springframework.stereotype.Component;
-import searchengine.model.Lemma;
+import searchengine.dto.statistics.CacheStatistics;
+import searchengine.index.InvertedIndex;
+import searchengine.index.Positions;
 import searchengine.model.Page;
-import searchengine.model.PageIndex;
 import searchengine.model.Site;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageIndexRepository;
+import searchengine.repository.IndexBatchWriter;
 
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 
 @Component
-public class LemmaProcessor {
+public class LemmaProcessor implements MeterBinder {
 
-    private final LemmaRepository lemmaRepository;
-    private final PageIndexRepository pageIndexRepository;
+    private final IndexBatchWriter indexBatchWriter;
+    private final InvertedIndex invertedIndex;
     private final LuceneMorphology russianMorph;
     private final LuceneMorphology englishMorph;
 
-    private static final Pattern CYR = Pattern.compile("\\p{IsCyrillic}");
+    private static final String SKIP = "";
+    private static final int WORD_CACHE_SIZE = 200_000;
 
-    public LemmaProcessor(LemmaRepository lemmaRepository,
-                          PageIndexRepository pageIndexRepository) throws Exception {
-        this.lemmaRepository = lemmaRepository;
-        this.pageIndexRepository = pageIndexRepository;
+    private final Cache<String, String> lemmaByWord = Caffeine.newBuilder()
+            .maximumSize(WORD_CACHE_SIZE)
+            .recordStats()
+            .build();
+    private final Function<String, String> russianLemma;
+    private final Function<String, String> englishLemma;
+
+    public LemmaProcessor(IndexBatchWriter indexBatchWriter, InvertedIndex invertedIndex) throws Exception {
+        this.indexBatchWriter = indexBatchWriter;
+        this.invertedIndex = invertedIndex;
         this.russianMorph = new RussianLuceneMorphology();
         this.englishMorph = new EnglishLuceneMorphology();
+        this.russianLemma = word -> lemmaOf(russianMorph, word);
+        this.englishLemma = word -> lemmaOf(englishMorph, word);
     }
 
-    private String toPlainText(String html) {
-        String text = Jsoup.parse(html == null ? "" : html).text();
-        return text.replaceAll("\\s+", " ").trim();
+    public Map<String, Integer> collectLemmas(String text) {
+        return lemmatize(WordCounts.of(text));
     }
 
-    public Map<String, Integer> collectLemmas(String text) {
+    public Map<String, Integer> lemmatize(WordCounts words) {
         Map<String, Integer> lemmas = new HashMap<>();
-        String safe = text == null ? "" : text;
-
-        String[] words = safe.toLowerCase(Locale.ROOT).split("[^\\p{L}]+");
-
-        for (String word : words) {
-            if (word.isBlank()) continue;
-            if (word.length() < 2) continue;
-
-            LuceneMorphology morph = isRussian(word) ? russianMorph : englishMorph;
+        for (int i = 0; i < words.size(); i++) {
+            String lemma = lemmaOf(words, i);
+            if (!lemma.isEmpty()) {
+                lemmas.merge(lemma, words.count(i), Integer::sum);
+            }
+        }
+        return lemmas;
+    }
 
-            try {
-                if (isServiceWord(morph, word)) continue;
+    /**
+     * Ascending word positions of every lemma in the text. Words without a lemma still take a position, so
+     * the distance between two positions is the distance between the words in the text.
+     */
+    public Map<String, int[]> lemmaPositions(WordCounts words) {
+        List<String> lemmas = new ArrayList<>();
+        List<int[]> positions = new ArrayList<>();
+        Map<String, Integer> slotByLemma = new HashMap<>();
+        int[] slotOfWord = new int[words.size()];
+        for (int i = 0; i < words.size(); i++) {
+            String lemma = lemmaOf(words, i);
+            if (lemma.isEmpty()) {
+                slotOfWord[i] = -1;
+                continue;
+            }
+            Integer slot = slotByLemma.get(lemma);
+            if (slot == null) {
+                slot = lemmas.size();
+                slotByLemma.put(lemma, slot);
+                lemmas.add(lemma);
+                positions.add(new int[words.count(i)]);
+            } else {
+                positions.set(slot, new int[positions.get(slot).length + words.count(i)]);
+            }
+            slotOfWord[i] = slot;
+        }
 
-                List<String> normalForms = morph.getNormalForms(word);
-                if (!normalForms.isEmpty()) {
-                    String lemma = normalForms.get(0).toLowerCase(Locale.ROOT);
-                    lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
-                }
-            } catch (RuntimeException ex) {
-                System.out.println("Не удалось обработать слово: " + word + " (" + ex.getMessage() + ")");
+        int[] filled = new int[lemmas.size()];
+        for (int position = 0; position < words.total(); position++) {
+            int slot = slotOfWord[words.wordAt(position)];
+            if (slot >= 0) {
+                positions.get(slot)[filled[slot]++] = position;
             }
         }
-        return lemmas;
+        Map<String, int[]> result = new HashMap<>(lemmas.size() * 2);
+        for (int slot = 0; slot < lemmas.size(); slot++) {
+            result.put(lemmas.get(slot), positions.get(slot));
+        }
+        return result;
+    }
+
+    private String lemmaOf(WordCounts words, int i) {
+        String word = words.word(i);
+        if (word.length() < 2) return SKIP;
+        return lemmaByWord.get(word, words.isCyrillic(i) ? russianLemma : englishLemma);
     }
 
-    private boolean isRussian(String word) {
-        return CYR.matcher(word).find();
+    public CacheStatistics getCacheStatistics() {
+        return CacheStatistics.of(lemmaByWord);
     }
 
-    private boolean isServiceWord(LuceneMorphology morph, String word) {
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, lemmaByWord, "lemma.words");
+    }
+
+    /**
+     * The first normal form of the word, or {@link #SKIP} for service words and words the dictionary cannot
+     * analyse. One getMorphInfo call answers both: each entry is "normal form|grammar", in the same order
+     * as getNormalForms.
+     */
+    private String lemmaOf(LuceneMorphology morph, String word) {
         List<String> info;
         try {
             info = morph.getMorphInfo(word);
         } catch (RuntimeException e) {
-            return true;
+            return SKIP;
         }
+        if (info.isEmpty() || isServiceWord(info)) return SKIP;
 
+        String first = info.get(0);
+        int separator = first.indexOf('|');
+        return (separator < 0 ? first : first.substring(0, separator)).toLowerCase(Locale.ROOT);
+    }
+
+    private boolean isServiceWord(List<String> info) {
         boolean ruStop = info.stream().anyMatch(p ->
                 p.contains("СОЮЗ") || p.contains("МЕЖД") || p.contains("ПРЕДЛ") || p.contains("ЧАСТ"));
         boolean enStop = info.stream().anyMatch(p ->
@@ -86,36 +146,64 @@ public class LemmaProcessor {
         return ruStop || enStop;
     }
 
-    public void processAndSaveLemmas(String html, Site site, Page page) {
-        String plain = toPlainText(html);
-        Map<String, Integer> lemmasFromPage = collectLemmas(plain);
-
-        for (Map.Entry<String, Integer> entry : lemmasFromPage.entrySet()) {
-            String lemmaStr = entry.getKey();
-            int freq = entry.getValue();
-
-            Lemma lemma = lemmaRepository.findByLemmaAndSite(lemmaStr, site)
-                    .orElseGet(() -> {
-                        Lemma l = new Lemma();
-                        l.setSite(site);
-                        l.setLemma(lemmaStr);
-                        l.setFrequency(0);
-                        return lemmaRepository.save(l);
-                    });
-
-            lemma.setFrequency(lemma.getFrequency() + 1);
-            lemmaRepository.save(lemma);
-
-            PageIndex idx = pageIndexRepository.findByPageIdAndLemmaId(page.getId(), lemma.getId())
-                    .orElseGet(() -> {
-                        PageIndex pi = new PageIndex();
-                        pi.setPage(page);
-                        pi.setLemma(lemma);
-                        pi.setRank(0f);
-                        return pi;
-                    });
-            idx.setRank((float) freq);
-            pageIndexRepository.save(idx);
+    public void upsertLemmas(Map<String, int[]> lemmasFromPage, Site site, Page page) {
+        if (lemmasFromPage.isEmpty()) return;
+
+        Map<String, Integer> lemmaIds = indexBatchWriter.upsertLemmas(site.getId(), lemmasFromPage.keySet());
+        Map<Integer, Float> ranks = toRanks(lemmasFromPage, lemmaIds);
+        Map<Integer, byte[]> positions = toPositions(lemmasFromPage, lemmaIds);
+        indexBatchWriter.insertIndexes(page.getId(), ranks, positions);
+        invertedIndex.addPage(site.getId(), page.getId(), lemmaIds, ranks, positions);
+    }
+
+    public void saveLemmas(Map<String, int[]> lemmasFromPage, Page page, SiteLemmaDictionary dictionary) {
+        if (lemmasFromPage.isEmpty()) return;
+
+        Map<String, Integer> lemmaIds = dictionary.resolveIds(lemmasFromPage.keySet());
+        Map<Integer, Float> ranks = toRanks(lemmasFromPage, lemmaIds);
+        Map<Integer, byte[]> positions = toPositions(lemmasFromPage, lemmaIds);
+        indexBatchWriter.insertIndexes(page.getId(), ranks, positions);
+        invertedIndex.addPage(dictionary.getSiteId(), page.getId(), lemmaIds, ranks, positions);
+        dictionary.countPage(ranks.keySet());
+    }
+
+    public void replaceLemmas(Map<String, int[]> lemmasFromPage, Page page, SiteLemmaDictionary dictionary) {
+        Set<Integer> previous = indexBatchWriter.deleteIndexes(page.getId());
+        invertedIndex.removePage(dictionary.getSiteId(), page.getId(), previous);
+        Map<String, Integer> lemmaIds = lemmasFromPage.isEmpty()
+                ? Map.of()
+                : dictionary.resolveIds(lemmasFromPage.keySet());
+        Map<Integer, Float> ranks = toRanks(lemmasFromPage, lemmaIds);
+        Map<Integer, byte[]> positions = toPositions(lemmasFromPage, lemmaIds);
+        indexBatchWriter.insertIndexes(page.getId(), ranks, positions);
+        invertedIndex.addPage(dictionary.getSiteId(), page.getId(), lemmaIds, ranks, positions);
+
+        Set<Integer> added = new HashSet<>(ranks.keySet());
+        added.removeAll(previous);
+        Set<Integer> removed = new HashSet<>(previous);
+        removed.removeAll(ranks.keySet());
+        dictionary.updatePage(added, removed);
+    }
+
+    private Map<Integer, Float> toRanks(Map<String, int[]> lemmasFromPage, Map<String, Integer> lemmaIds) {
+        Map<Integer, Float> ranks = new HashMap<>(lemmaIds.size() * 2);
+        for (Map.Entry<String, int[]> entry : lemmasFromPage.entrySet()) {
+            Integer lemmaId = lemmaIds.get(entry.getKey());
+            if (lemmaId != null) {
+                ranks.put(lemmaId, (float) entry.getValue().length);
+            }
+        }
+        return ranks;
+    }
+
+    private Map<Integer, byte[]> toPositions(Map<String, int[]> lemmasFromPage, Map<String, Integer> lemmaIds) {
+        Map<Integer, byte[]> positions = new HashMap<>(lemmaIds.size() * 2);
+        for (Map.Entry<String, int[]> entry : lemmasFromPage.entrySet()) {
+            Integer lemmaId = lemmaIds.get(entry.getKey());
+            if (lemmaId != null) {
+                positions.put(lemmaId, Positions.encode(entry.getValue()));
+            }
         }
+        return positions;
     }
 }
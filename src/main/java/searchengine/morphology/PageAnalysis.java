@@ -0,0 +1,15 @@
+package searchengine.morphology;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class PageAnalysis {
+    private final String title;
+    private final String text;
+    private final List<String> links;
+    private final WordCounts words;
+}
@@ -0,0 +1,111 @@
+package searchengine.morphology;
+
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the title, plain text, absolute link targets and word counts of a parsed page in a single
+ * traversal of its DOM. The text is {@link Element#text()} of the whole document with all whitespace,
+ * including that of {@code pre} blocks, collapsed to single spaces.
+ */
+public final class PageAnalyzer {
+
+    private PageAnalyzer() {
+    }
+
+    public static PageAnalysis analyze(Document doc) {
+        Collector collector = new Collector();
+        NodeTraversor.traverse(collector, doc);
+        String text = collector.text.toString().trim();
+        return new PageAnalysis(collector.title == null ? "" : collector.title, text,
+                collector.links, WordCounts.of(text));
+    }
+
+    private static final class Collector implements NodeVisitor {
+        private final StringBuilder text = new StringBuilder();
+        private final List<String> links = new ArrayList<>();
+        private String title;
+
+        @Override
+        public void head(Node node, int depth) {
+            if (node instanceof TextNode) {
+                TextNode textNode = (TextNode) node;
+                if (title == null && isTitle(textNode.parentNode())) {
+                    title = textNode.text().trim();
+                }
+                appendCollapsed(textNode.getWholeText(),
+                        textNode instanceof CDataNode || isPreformatted(textNode.parentNode()));
+            } else if (node instanceof Element) {
+                Element element = (Element) node;
+                if (text.length() > 0 && (element.isBlock() || element.normalName().equals("br"))
+                        && !endsWithSpace()) {
+                    text.append(' ');
+                }
+                if (element.normalName().equals("a") && element.hasAttr("href")) {
+                    String href = element.absUrl("href");
+                    if (!href.isEmpty()) links.add(href);
+                }
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            if (node instanceof Element && ((Element) node).isBlock()) {
+                Node next = node.nextSibling();
+                if ((next instanceof TextNode || next instanceof Element && !((Element) next).tag().formatAsBlock())
+                        && !endsWithSpace()) {
+                    text.append(' ');
+                }
+            }
+        }
+
+        /**
+         * Appends {@code value} with each run of whitespace turned into one space, and none at all right after
+         * a space, the way {@link Element#text()} followed by collapsing {@code \s+} writes text nodes: outside
+         * preformatted text non-breaking spaces count as whitespace and zero-width spaces and soft hyphens are
+         * dropped, inside it they are kept.
+         */
+        private void appendCollapsed(String value, boolean preformatted) {
+            boolean lastWasWhite = endsWithSpace();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r'
+                        || !preformatted && c == '\u00a0') {
+                    if (!lastWasWhite) text.append(' ');
+                    lastWasWhite = true;
+                } else if (preformatted || c != '\u200b' && c != '\u00ad') {
+                    text.append(c);
+                    lastWasWhite = false;
+                }
+            }
+        }
+
+        /**
+         * Whether text under {@code node} keeps its whitespace, looking up to six ancestors as jsoup does.
+         */
+        private static boolean isPreformatted(Node node) {
+            Element element = node instanceof Element ? (Element) node : null;
+            for (int i = 0; i < 6 && element != null; i++) {
+                if (element.tag().preserveWhitespace()) return true;
+                element = element.parent();
+            }
+            return false;
+        }
+
+        private boolean endsWithSpace() {
+            return text.length() > 0 && text.charAt(text.length() - 1) == ' ';
+        }
+
+        private static boolean isTitle(Node node) {
+            return node instanceof Element && ((Element) node).normalName().equals("title");
+        }
+    }
+}
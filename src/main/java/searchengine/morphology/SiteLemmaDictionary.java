@@ -0,0 +1,130 @@
+package searchengine.morphology;
+
+import searchengine.repository.IndexBatchWriter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Lemma ids and pending frequency changes of one site for the duration of an indexing run.
+ * Frequencies are accumulated in memory and written to the lemma table every {@code flushEveryPages} pages,
+ * and {@code flushed} is run after each write, so results derived from the index can be invalidated at the
+ * same pace. Lemma rows created during the run are recognised by an id above the largest one that existed
+ * when the dictionary was made, and reported to {@code lemmasAdded} once each.
+ */
+public class SiteLemmaDictionary {
+
+    private final int siteId;
+    private final IndexBatchWriter indexBatchWriter;
+    private final int flushEveryPages;
+    private final int lastExistingLemmaId;
+    private final IntConsumer lemmasAdded;
+    private final Runnable flushed;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> pendingFrequencies = new ConcurrentHashMap<>();
+    private final AtomicInteger pagesSinceFlush = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public SiteLemmaDictionary(int siteId, IndexBatchWriter indexBatchWriter, int flushEveryPages) {
+        this(siteId, indexBatchWriter, flushEveryPages, added -> {
+        }, () -> {
+        });
+    }
+
+    public SiteLemmaDictionary(int siteId, IndexBatchWriter indexBatchWriter, int flushEveryPages,
+                               IntConsumer lemmasAdded, Runnable flushed) {
+        this.siteId = siteId;
+        this.indexBatchWriter = indexBatchWriter;
+        this.flushEveryPages = Math.max(1, flushEveryPages);
+        this.lastExistingLemmaId = indexBatchWriter.maxLemmaId();
+        this.lemmasAdded = lemmasAdded;
+        this.flushed = flushed;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public Map<String, Integer> resolveIds(Collection<String> lemmas) {
+        Map<String, Integer> resolved = new HashMap<>(lemmas.size() * 2);
+        List<String> missing = new ArrayList<>();
+        for (String lemma : lemmas) {
+            Integer id = ids.get(lemma);
+            if (id != null) {
+                resolved.put(lemma, id);
+            } else {
+                missing.add(lemma);
+            }
+        }
+        if (!missing.isEmpty()) {
+            int added = 0;
+            for (Map.Entry<String, Integer> entry : indexBatchWriter.insertMissingLemmas(siteId, missing).entrySet()) {
+                int id = entry.getValue();
+                if (ids.putIfAbsent(entry.getKey(), id) == null && id > lastExistingLemmaId) {
+                    added++;
+                }
+                resolved.put(entry.getKey(), id);
+            }
+            if (added > 0) {
+                lemmasAdded.accept(added);
+            }
+        }
+        return resolved;
+    }
+
+    public void countPage(Collection<Integer> lemmaIds) {
+        updatePage(lemmaIds, List.of());
+    }
+
+    public void updatePage(Collection<Integer> addedLemmaIds, Collection<Integer> removedLemmaIds) {
+        for (Integer lemmaId : addedLemmaIds) {
+            pendingFrequencies.computeIfAbsent(lemmaId, k -> new LongAdder()).increment();
+        }
+        for (Integer lemmaId : removedLemmaIds) {
+            pendingFrequencies.computeIfAbsent(lemmaId, k -> new LongAdder()).decrement();
+        }
+        if (pagesSinceFlush.incrementAndGet() >= flushEveryPages && flushLock.tryLock()) {
+            try {
+                flushPending();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private void flushPending() {
+        pagesSinceFlush.set(0);
+        Map<Integer, Long> deltas = new HashMap<>();
+        pendingFrequencies.forEach((lemmaId, counter) -> {
+            long delta = counter.sumThenReset();
+            if (delta != 0) {
+                deltas.put(lemmaId, delta);
+            }
+        });
+        try {
+            indexBatchWriter.addFrequencies(deltas);
+        } catch (RuntimeException e) {
+            deltas.forEach((lemmaId, delta) -> pendingFrequencies.get(lemmaId).add(delta));
+            throw e;
+        }
+        flushed.run();
+    }
+}
@@ -0,0 +1,187 @@
+package searchengine.morphology;
+
+import java.util.Arrays;
+
+/**
+ * Distinct lowercase words of a text with the number of times each occurs. Words are maximal runs of
+ * letters, exactly as lowercasing the text with {@link java.util.Locale#ROOT} and splitting it on
+ * {@code [^\p{L}]+} would give. The text is scanned once through a reused character buffer, and a String
+ * is created only the first time a word is seen. The order of the words is kept as well, so the positions
+ * of every word in the text can be recovered.
+ */
+public final class WordCounts {
+
+    private static final int DOTTED_CAPITAL_I = 0x130;
+
+    private String[] words = new String[64];
+    private int[] counts = new int[64];
+    private boolean[] cyrillic = new boolean[64];
+    private int[] slots = new int[128];
+    private int[] sequence = new int[64];
+    private int size;
+    private int total;
+
+    private WordCounts() {
+    }
+
+    public static WordCounts of(String text) {
+        WordCounts result = new WordCounts();
+        if (text == null) return result;
+
+        char[] buffer = new char[32];
+        int length = 0;
+        int hash = 0;
+        boolean hasCyrillic = false;
+        int i = 0;
+        int end = text.length();
+        while (i < end) {
+            int cp = text.charAt(i);
+            if (Character.isHighSurrogate((char) cp)) {
+                cp = text.codePointAt(i);
+            }
+            i += Character.charCount(cp);
+            if (!isLetter(cp)) {
+                if (length > 0) {
+                    result.add(buffer, length, hash, hasCyrillic);
+                    length = 0;
+                    hash = 0;
+                    hasCyrillic = false;
+                }
+                continue;
+            }
+
+            // String.toLowerCase turns U+0130 into 'i' followed by a combining dot, which is not a letter.
+            boolean breaksWord = cp == DOTTED_CAPITAL_I;
+            int lower = breaksWord ? 'i' : cp < 0x80 ? cp | 0x20 : Character.toLowerCase(cp);
+            if (length + 2 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            if (Character.isBmpCodePoint(lower)) {
+                buffer[length++] = (char) lower;
+                hash = 31 * hash + lower;
+            } else {
+                char high = Character.highSurrogate(lower);
+                char low = Character.lowSurrogate(lower);
+                buffer[length++] = high;
+                buffer[length++] = low;
+                hash = 31 * (31 * hash + high) + low;
+            }
+            if (!hasCyrillic && cp >= 0x80) {
+                hasCyrillic = isCyrillicLetter(cp);
+            }
+
+            if (breaksWord) {
+                result.add(buffer, length, hash, hasCyrillic);
+                length = 0;
+                hash = 0;
+                hasCyrillic = false;
+            }
+        }
+        if (length > 0) {
+            result.add(buffer, length, hash, hasCyrillic);
+        }
+        return result;
+    }
+
+    /**
+     * Number of distinct words.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of words counting repetitions.
+     */
+    public int total() {
+        return total;
+    }
+
+    public String word(int i) {
+        return words[i];
+    }
+
+    public int count(int i) {
+        return counts[i];
+    }
+
+    public boolean isCyrillic(int i) {
+        return cyrillic[i];
+    }
+
+    /**
+     * Index of the distinct word at {@code position} of the text, counting words from 0 up to
+     * {@link #total()}.
+     */
+    public int wordAt(int position) {
+        return sequence[position];
+    }
+
+    private static boolean isLetter(int cp) {
+        if (cp < 0x80) {
+            int lower = cp | 0x20;
+            return lower >= 'a' && lower <= 'z';
+        }
+        return Character.isLetter(cp);
+    }
+
+    private static boolean isCyrillicLetter(int cp) {
+        return cp >= 0x400 && cp <= 0x52f || Character.UnicodeScript.of(cp) == Character.UnicodeScript.CYRILLIC;
+    }
+
+    private void add(char[] buffer, int length, int hash, boolean hasCyrillic) {
+        if (total == sequence.length) {
+            sequence = Arrays.copyOf(sequence, total * 2);
+        }
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            if (sameWord(words[index], buffer, length)) {
+                counts[index]++;
+                sequence[total++] = index;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == words.length) {
+            words = Arrays.copyOf(words, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+            cyrillic = Arrays.copyOf(cyrillic, size * 2);
+        }
+        words[size] = new String(buffer, 0, length);
+        counts[size] = 1;
+        cyrillic[size] = hasCyrillic;
+        sequence[total++] = size;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        int[] grown = new int[slots.length * 2];
+        int mask = grown.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = mix(words[index].hashCode()) & mask;
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown[slot] = index + 1;
+        }
+        slots = grown;
+    }
+
+    private static boolean sameWord(String word, char[] buffer, int length) {
+        if (word.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != buffer[i]) return false;
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,123 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.model.Page;
+
+import java.util.*;
+
+@Repository
+@RequiredArgsConstructor
+public class IndexBatchWriter {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Map<String, Integer> upsertLemmas(int siteId, Collection<String> lemmas) {
+        return insertLemmas(siteId, lemmas, 1, "frequency = frequency + 1");
+    }
+
+    public Map<String, Integer> insertMissingLemmas(int siteId, Collection<String> lemmas) {
+        return insertLemmas(siteId, lemmas, 0, "id = id");
+    }
+
+    public void addFrequencies(Map<Integer, Long> deltasByLemmaId) {
+        if (deltasByLemmaId.isEmpty()) return;
+        List<Object[]> rows = new ArrayList<>(deltasByLemmaId.size());
+        new TreeMap<>(deltasByLemmaId).forEach((lemmaId, delta) -> rows.add(new Object[]{delta, lemmaId}));
+        jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = frequency + ? WHERE id = ?", rows);
+    }
+
+    public void insertIndexes(int pageId, Map<Integer, Float> ranksByLemmaId,
+                              Map<Integer, byte[]> positionsByLemmaId) {
+        if (ranksByLemmaId.isEmpty()) return;
+        List<Object[]> rows = new ArrayList<>(ranksByLemmaId.size());
+        ranksByLemmaId.forEach((lemmaId, rank) ->
+                rows.add(new Object[]{pageId, lemmaId, rank, positionsByLemmaId.get(lemmaId)}));
+        jdbcTemplate.batchUpdate("INSERT INTO page_index (page_id, lemma_id, rank_value, positions) " +
+                "VALUES (?, ?, ?, ?)", rows);
+    }
+
+    public Set<Integer> deleteIndexes(int pageId) {
+        Set<Integer> lemmaIds = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT lemma_id FROM page_index WHERE page_id = ?", Integer.class, pageId));
+        if (!lemmaIds.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM page_index WHERE page_id = ?", pageId);
+        }
+        return lemmaIds;
+    }
+
+    public void updatePage(Page page) {
+        jdbcTemplate.update("UPDATE page SET code = ?, title = ?, content_hash = ?, etag = ?, last_modified = ? " +
+                        "WHERE id = ?",
+                page.getCode(), page.getTitle(), page.getContentHash(), page.getEtag(), page.getLastModified(),
+                page.getId());
+    }
+
+    public void deletePages(Collection<Integer> pageIds) {
+        List<Integer> ids = new ArrayList<>(new TreeSet<>(pageIds));
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + CHUNK_SIZE));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            Object[] args = chunk.toArray();
+
+            Map<Integer, Long> deltas = new HashMap<>();
+            jdbcTemplate.query("SELECT lemma_id, COUNT(*) AS pages FROM page_index WHERE page_id IN (" +
+                    placeholders + ") GROUP BY lemma_id", rs -> {
+                deltas.put(rs.getInt("lemma_id"), -rs.getLong("pages"));
+            }, args);
+            jdbcTemplate.update("DELETE FROM page_index WHERE page_id IN (" + placeholders + ")", args);
+            jdbcTemplate.update("DELETE FROM page WHERE id IN (" + placeholders + ")", args);
+            addFrequencies(deltas);
+        }
+    }
+
+    public int maxLemmaId() {
+        Integer max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM lemma", Integer.class);
+        return max == null ? 0 : max;
+    }
+
+    public int deleteUnusedLemmas(int siteId) {
+        return jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? AND frequency <= 0 " +
+                "AND NOT EXISTS (SELECT 1 FROM page_index pi WHERE pi.lemma_id = lemma.id)", siteId);
+    }
+
+    private Map<String, Integer> insertLemmas(int siteId, Collection<String> lemmas,
+                                              int frequency, String onDuplicate) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(lemmas));
+        Map<String, Integer> ids = new HashMap<>(sorted.size() * 2);
+
+        for (int from = 0; from < sorted.size(); from += CHUNK_SIZE) {
+            List<String> chunk = sorted.subList(from, Math.min(sorted.size(), from + CHUNK_SIZE));
+
+            String values = String.join(",", Collections.nCopies(chunk.size(), "(?, ?, " + frequency + ")"));
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i * 2] = siteId;
+                args[i * 2 + 1] = chunk.get(i);
+            }
+            jdbcTemplate.update("INSERT INTO lemma (site_id, lemma, frequency) VALUES " + values +
+                    " ON DUPLICATE KEY UPDATE " + onDuplicate, args);
+
+            ids.putAll(findLemmaIds(siteId, chunk));
+        }
+        return ids;
+    }
+
+    private Map<String, Integer> findLemmaIds(int siteId, List<String> lemmas) {
+        String placeholders = String.join(",", Collections.nCopies(lemmas.size(), "?"));
+        Object[] args = new Object[lemmas.size() + 1];
+        args[0] = siteId;
+        for (int i = 0; i < lemmas.size(); i++) {
+            args[i + 1] = lemmas.get(i);
+        }
+        Map<String, Integer> ids = new HashMap<>(lemmas.size() * 2);
+        jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (" + placeholders + ")",
+                rs -> {
+                    ids.put(rs.getString("lemma"), rs.getInt("id"));
+                }, args);
+        return ids;
+    }
+}
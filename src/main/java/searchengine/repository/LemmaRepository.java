@@ -1,16 +1,39 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import searchengine.model.Lemma;
 import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     Optional<Lemma> findByLemmaAndSite(String lemma, Site site);
-    long countBySiteId(int siteId);
-    List<Lemma> findByLemmaInAndSiteId(List<String> lemmas, int siteId);
-    List<Lemma> findByLemmaIn(List<String> lemmas);
-    void deleteAllBySite(Site site);
+
+    @Query("SELECT l.id AS id, l.site.id AS siteId, l.lemma AS lemma, l.frequency AS frequency FROM Lemma l " +
+            "WHERE l.lemma IN :lemmas AND l.site.id = :siteId")
+    List<LemmaRow> findRowsByLemmaInAndSiteId(@Param("lemmas") Collection<String> lemmas,
+                                              @Param("siteId") int siteId);
+
+    @Query("SELECT l.id AS id, l.site.id AS siteId, l.lemma AS lemma, l.frequency AS frequency FROM Lemma l " +
+            "WHERE l.lemma IN :lemmas")
+    List<LemmaRow> findRowsByLemmaIn(@Param("lemmas") Collection<String> lemmas);
+
+    @Modifying
+    @Query("DELETE FROM Lemma l WHERE l.site.id = :siteId")
+    int deleteAllBySiteId(@Param("siteId") int siteId);
+
+    interface LemmaRow {
+        int getId();
+
+        int getSiteId();
+
+        String getLemma();
+
+        int getFrequency();
+    }
 }
@@ -0,0 +1,90 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+@Repository
+@RequiredArgsConstructor
+public class PageContentStore {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void save(int pageId, String html, String text, List<String> links) {
+        jdbcTemplate.update("INSERT INTO page_content (page_id, html, plain_text, links) VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE html = VALUES(html), plain_text = VALUES(plain_text), " +
+                        "links = VALUES(links)",
+                pageId, compress(html), compress(text), compress(String.join("\n", links)));
+    }
+
+    /**
+     * Absolute link targets of a page as they were when it was written, one per line.
+     */
+    public List<String> findLinks(int pageId) {
+        List<byte[]> rows = jdbcTemplate.query("SELECT links FROM page_content WHERE page_id = ?",
+                (rs, i) -> rs.getBytes(1), pageId);
+        String links = rows.isEmpty() ? null : decompress(rows.get(0));
+        return links == null || links.isEmpty() ? List.of() : List.of(links.split("\n"));
+    }
+
+    public Map<Integer, String> findTexts(Collection<Integer> pageIds) {
+        List<Integer> ids = new ArrayList<>(pageIds);
+        Map<Integer, String> texts = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + CHUNK_SIZE));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT page_id, plain_text FROM page_content WHERE page_id IN (" +
+                    placeholders + ")", rs -> {
+                texts.put(rs.getInt(1), decompress(rs.getBytes(2)));
+            }, chunk.toArray());
+        }
+        return texts;
+    }
+
+    static byte[] compress(String value) {
+        if (value == null) return null;
+        byte[] input = value.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String decompress(byte[] value) {
+        if (value == null) return null;
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(value.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) break;
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Повреждено содержимое страницы", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,15 +1,45 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import searchengine.model.Page;
 import searchengine.model.PageIndex;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 public interface PageIndexRepository extends JpaRepository<PageIndex, Integer> {
     void deleteAllByPage(Page page);
-    List<PageIndex> findByLemmaId(int lemmaId);
-    Optional<PageIndex> findByPageIdAndLemmaId(int pageId, int lemmaId);
     List<PageIndex> findAllByPage(Page page);
+
+    @Query("SELECT pi.lemma.id AS lemmaId, pi.page.id AS pageId, pi.rank AS rank FROM PageIndex pi " +
+            "WHERE pi.lemma.id IN :lemmaIds ORDER BY pi.lemma.id, pi.page.id")
+    List<RankRow> findRanksByLemmaIds(@Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Query("SELECT pi.page.id AS pageId, pi.lemma.id AS lemmaId, pi.positions AS positions FROM PageIndex pi " +
+            "WHERE pi.page.id IN :pageIds AND pi.lemma.id IN :lemmaIds")
+    List<PositionRow> findPositions(@Param("pageIds") Collection<Integer> pageIds,
+                                    @Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Modifying
+    @Query("DELETE FROM PageIndex pi WHERE pi.page.id IN (SELECT p.id FROM Page p WHERE p.site.id = :siteId)")
+    int deleteAllBySiteId(@Param("siteId") int siteId);
+
+    interface RankRow {
+        int getLemmaId();
+
+        int getPageId();
+
+        float getRank();
+    }
+
+    interface PositionRow {
+        int getPageId();
+
+        int getLemmaId();
+
+        byte[] getPositions();
+    }
 }
@@ -1,15 +1,50 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface PageRepository extends JpaRepository<Page, Integer> {
-    List<Page> findAllBySite(Site site);
-    void deleteAllBySite(Site site);
     Optional<Page> findByPathAndSite(String path, Site site);
-    long countBySite(Site site);
+
+    @Query("SELECT p.id AS id, p.path AS path, p.contentHash AS contentHash, p.etag AS etag, " +
+            "p.lastModified AS lastModified FROM Page p WHERE p.site.id = :siteId")
+    List<PageState> findStatesBySiteId(@Param("siteId") int siteId);
+
+    @Query("SELECT p.id AS id, p.site.id AS siteId, p.path AS path, p.title AS title FROM Page p " +
+            "WHERE p.id IN :ids")
+    List<PageSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query("DELETE FROM Page p WHERE p.site.id = :siteId")
+    int deleteAllBySiteId(@Param("siteId") int siteId);
+
+    interface PageState {
+        int getId();
+
+        String getPath();
+
+        String getContentHash();
+
+        String getEtag();
+
+        String getLastModified();
+    }
+
+    interface PageSummary {
+        int getId();
+
+        int getSiteId();
+
+        String getPath();
+
+        String getTitle();
+    }
 }
@@ -1,26 +1,44 @@
 package searchengine.services;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
-import org.jsoup.Connection;
-import org.jsoup.HttpStatusException;
-import org.jsoup.Jsoup;
+import lombok.extern.slf4j.Slf4j;
 import org.jsoup.nodes.Document;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import searchengine.config.AppConfig;
+import searchengine.config.CrawlerType;
 import searchengine.config.SiteConfig;
 import searchengine.dto.SimpleResponse;
+import searchengine.fetch.FetchResult;
+import searchengine.fetch.PageFetcher;
+import searchengine.index.IndexGeneration;
+import searchengine.index.InvertedIndex;
+import searchengine.index.SiteRegistry;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.model.Status;
 import searchengine.morphology.LemmaProcessor;
+import searchengine.morphology.PageAnalysis;
+import searchengine.morphology.PageAnalyzer;
+import searchengine.morphology.SiteLemmaDictionary;
+import searchengine.repository.IndexBatchWriter;
 import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageContentStore;
 import searchengine.repository.PageIndexRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.task.IndexingPipeline;
+import searchengine.task.KnownPages;
+import searchengine.task.PageWriter;
+import searchengine.task.SiteCrawler;
 import searchengine.task.SiteIndexerTask;
+import searchengine.task.UrlFrontier;
+import searchengine.task.VirtualThreadCrawler;
 
 import javax.net.ssl.SSLHandshakeException;
 import javax.transaction.Transactional;
@@ -28,37 +46,96 @@ import java.io.IOException;
 import java.net.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ForkJoinPool;
-
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts and stops crawls and single-page reindexing. Exposes whether indexing runs, how many sites are
+ * left and the queue depths of the pipeline crawler as gauges, and times every site crawl
+ * ({@code indexing.site}) and single-page job ({@code indexing.page}).
+ */
+@Slf4j
 @Service
 public class IndexingService {
 
+    private static final List<String> PIPELINE_STAGES = List.of("fetch", "parse", "lemmatize", "persist");
+
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
+    private final PageContentStore pageContentStore;
     private final LemmaRepository lemmaRepository;
     private final PageIndexRepository pageIndexRepository;
     private final AppConfig appConfig;
     private final LemmaProcessor lemmaProcessor;
+    private final IndexBatchWriter indexBatchWriter;
+    private final PageFetcher pageFetcher;
+    private final PageWriter pageWriter;
+    private final InvertedIndex invertedIndex;
+    private final IndexGeneration indexGeneration;
+    private final SiteRegistry siteRegistry;
+    private final MeterRegistry meterRegistry;
     private final IndexingService self;
 
     @Getter
     private volatile boolean indexing = false;
+    private int runId;
     private ForkJoinPool pool;
+    private volatile SiteCrawler crawler;
+    private final Map<Integer, Timer.Sample> siteTimers = new ConcurrentHashMap<>();
+    private final AtomicInteger remainingSites = new AtomicInteger();
+    private final List<SiteLemmaDictionary> dictionaries = new CopyOnWriteArrayList<>();
 
     public IndexingService(SiteRepository siteRepository,
                            PageRepository pageRepository,
+                           PageContentStore pageContentStore,
                            LemmaRepository lemmaRepository,
                            PageIndexRepository pageIndexRepository,
                            AppConfig appConfig,
                            LemmaProcessor lemmaProcessor,
+                           IndexBatchWriter indexBatchWriter,
+                           PageFetcher pageFetcher,
+                           PageWriter pageWriter,
+                           InvertedIndex invertedIndex,
+                           IndexGeneration indexGeneration,
+                           SiteRegistry siteRegistry,
+                           MeterRegistry meterRegistry,
                            @Lazy IndexingService self) {
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
+        this.pageContentStore = pageContentStore;
         this.lemmaRepository = lemmaRepository;
         this.pageIndexRepository = pageIndexRepository;
         this.appConfig = appConfig;
         this.lemmaProcessor = lemmaProcessor;
+        this.indexBatchWriter = indexBatchWriter;
+        this.pageFetcher = pageFetcher;
+        this.pageWriter = pageWriter;
+        this.invertedIndex = invertedIndex;
+        this.indexGeneration = indexGeneration;
+        this.siteRegistry = siteRegistry;
+        this.meterRegistry = meterRegistry;
         this.self = self;
+        registerGauges();
+    }
+
+    private void registerGauges() {
+        Gauge.builder("indexing.active", this, service -> service.indexing ? 1 : 0).register(meterRegistry);
+        Gauge.builder("indexing.sites.remaining", remainingSites, AtomicInteger::get).register(meterRegistry);
+        for (String stage : PIPELINE_STAGES) {
+            Gauge.builder("crawler.queue.depth", this, service -> service.queueDepth(stage))
+                    .tag("stage", stage)
+                    .register(meterRegistry);
+        }
+    }
+
+    private double queueDepth(String stage) {
+        SiteCrawler current = crawler;
+        if (current instanceof IndexingPipeline pipeline) {
+            return pipeline.getQueueDepths().getOrDefault(stage, 0);
+        }
+        return 0;
     }
 
     private void failSite(Site site, String message) {
@@ -75,7 +152,12 @@ public class IndexingService {
             return new SimpleResponse(false, "Индексация уже запущена");
         }
         indexing = true;
-        pool = new ForkJoinPool();
+        int run = ++runId;
+        dictionaries.clear();
+        crawler = createCrawler(appConfig.getCrawler());
+        if (crawler == null) {
+            pool = new ForkJoinPool();
+        }
 
         Set<String> uniqueRoots = new HashSet<>();
         List<SiteConfig> uniqueSites = new ArrayList<>();
@@ -86,19 +168,22 @@ public class IndexingService {
             }
         }
 
+        if (uniqueSites.isEmpty()) {
+            stopWorkers();
+            indexing = false;
+            return new SimpleResponse(false, "Не заданы сайты для индексации");
+        }
+
+        remainingSites.set(uniqueSites.size());
         for (SiteConfig siteConfig : uniqueSites) {
             String siteUrl = siteConfig.getUrl();
             String siteName = siteConfig.getName();
 
             Site site = siteRepository.findByUrl(siteUrl).orElse(null);
-            if (site != null) {
-                List<Page> pages = pageRepository.findAllBySite(site);
-                for (Page page : pages) {
-                    pageIndexRepository.deleteAllByPage(page);
-                }
-                lemmaRepository.deleteAllBySite(site);
-                pageRepository.deleteAllBySite(site);
-            } else {
+            boolean incremental = site != null && appConfig.isIncremental();
+            if (site != null && !incremental) {
+                purgeSite(site);
+            } else if (site == null) {
                 site = new Site();
                 site.setUrl(siteUrl);
                 site.setName(siteName);
@@ -108,29 +193,139 @@ public class IndexingService {
             site.setStatusTime(LocalDateTime.now());
             site.setLastError(null);
             siteRepository.save(site);
-
-            Set<String> visited = new HashSet<>();
-            pool.submit(new SiteIndexerTask(
-                    siteUrl,
-                    site,
-                    pageRepository,
-                    lemmaRepository,
-                    pageIndexRepository,
-                    siteRepository,
-                    visited,
-                    lemmaProcessor
-            ));
+            siteRegistry.register(site);
+            siteTimers.put(site.getId(), Timer.start(meterRegistry));
+
+            int siteId = site.getId();
+            SiteLemmaDictionary dictionary = new SiteLemmaDictionary(siteId, indexBatchWriter,
+                    appConfig.getLemmaFlushPages(), added -> siteRegistry.addLemmas(siteId, added),
+                    indexGeneration::advance);
+            dictionaries.add(dictionary);
+
+            UrlFrontier frontier = new UrlFrontier(appConfig.getMaxUrlsPerSite());
+            KnownPages known = incremental
+                    ? new KnownPages(pageRepository.findStatesBySiteId(site.getId()))
+                    : KnownPages.none();
+
+            Site crawledSite = site;
+            if (crawler != null) {
+                try {
+                    crawler.crawl(siteUrl, site, frontier, dictionary, known,
+                            () -> completeSite(crawledSite, dictionary, frontier, known, run));
+                } catch (MalformedURLException e) {
+                    failSite(site, "Некорректный URL сайта");
+                    completeSite(site, dictionary, frontier, known, run);
+                }
+            } else {
+                SiteIndexerTask task = new SiteIndexerTask(
+                        siteUrl,
+                        site,
+                        siteRepository,
+                        frontier,
+                        dictionary,
+                        known,
+                        pageFetcher,
+                        pageWriter
+                );
+                pool.execute(() -> {
+                    try {
+                        task.invoke();
+                    } finally {
+                        completeSite(crawledSite, dictionary, frontier, known, run);
+                    }
+                });
+            }
         }
         return new SimpleResponse(true, null);
     }
 
+    private void purgeSite(Site site) {
+        int siteId = site.getId();
+        pageIndexRepository.deleteAllBySiteId(siteId);
+        lemmaRepository.deleteAllBySiteId(siteId);
+        pageRepository.deleteAllBySiteId(siteId);
+        invertedIndex.removeSite(siteId);
+        siteRegistry.clear(siteId);
+        indexGeneration.advance();
+    }
+
+    private void completeSite(Site site, SiteLemmaDictionary dictionary, UrlFrontier frontier,
+                              KnownPages known, int run) {
+        log.info("Crawl of {} finished: {} urls, {} duplicate links rejected, {} urls over the limit, " +
+                        "lemma cache hit rate {}",
+                site.getUrl(), frontier.size(), frontier.getDuplicates(), frontier.getOverflow(),
+                String.format(Locale.ROOT, "%.3f", lemmaProcessor.getCacheStatistics().getHitRate()));
+        try {
+            if (known.size() > 0 && site.getStatus() == Status.INDEXING && isCurrentRun(run)) {
+                int removed = pageWriter.removeUnseen(site, known);
+                log.info("Removed {} unreachable pages of {}", removed, site.getUrl());
+            }
+            dictionary.flush();
+            if (known.size() > 0) {
+                pageWriter.removeUnusedLemmas(site);
+            }
+        } finally {
+            siteRegistry.persist(site.getId());
+            indexGeneration.advance();
+            finishSite(site, run);
+        }
+    }
+
+    private synchronized boolean isCurrentRun(int run) {
+        return indexing && run == runId;
+    }
+
+    private synchronized void finishSite(Site site, int run) {
+        if (!indexing || run != runId) return;
+        if (site.getStatus() == Status.INDEXING) {
+            site.setStatus(Status.INDEXED);
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+        }
+        Timer.Sample sample = siteTimers.remove(site.getId());
+        if (sample != null) {
+            sample.stop(Timer.builder("indexing.site")
+                    .tag("site", site.getUrl())
+                    .tag("status", site.getStatus().name())
+                    .register(meterRegistry));
+        }
+        if (remainingSites.decrementAndGet() == 0) {
+            stopWorkers();
+            indexing = false;
+        }
+    }
+
+    private void stopWorkers() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+        if (crawler != null) {
+            crawler.shutdownNow();
+            crawler = null;
+        }
+    }
+
+    private SiteCrawler createCrawler(CrawlerType type) {
+        switch (type) {
+            case PIPELINE:
+                return new IndexingPipeline(appConfig.getPipeline(), siteRepository, pageFetcher, pageWriter);
+            case VIRTUAL_THREADS:
+                return new VirtualThreadCrawler(appConfig.getMaxConcurrentFetches(),
+                        appConfig.getMaxConcurrentFetchesPerSite(), siteRepository, pageFetcher, pageWriter);
+            default:
+                return null;
+        }
+    }
+
     @Transactional
     public synchronized SimpleResponse stopIndexing() {
         if (!indexing) {
             return new SimpleResponse(false, "Индексация не запущена");
         }
-        pool.shutdownNow();
+        stopWorkers();
         indexing = false;
+        dictionaries.forEach(SiteLemmaDictionary::flush);
 
         List<Site> sitesInProgress = siteRepository.findAllByStatus(Status.INDEXING);
         for (Site site : sitesInProgress) {
@@ -138,6 +333,7 @@ public class IndexingService {
             site.setLastError("Индексация остановлена пользователем");
             site.setStatusTime(LocalDateTime.now());
             siteRepository.save(site);
+            siteRegistry.persist(site.getId());
         }
         return new SimpleResponse(true, null);
     }
@@ -175,6 +371,17 @@ public class IndexingService {
     @Async
     @Transactional
     public void indexPageJob(String url) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Site site = null;
+        try {
+            site = reindexPage(url);
+        } finally {
+            String status = site == null ? "SKIPPED" : site.getStatus().name();
+            sample.stop(Timer.builder("indexing.page").tag("status", status).register(meterRegistry));
+        }
+    }
+
+    private Site reindexPage(String url) {
         Optional<SiteConfig> optionalConfig = appConfig.getSites().stream()
                 .filter(sc -> {
                     try {
@@ -187,7 +394,7 @@ public class IndexingService {
                 .findFirst();
 
         if (optionalConfig.isEmpty()) {
-            return;
+            return null;
         }
 
         SiteConfig config = optionalConfig.get();
@@ -202,48 +409,65 @@ public class IndexingService {
         site.setLastError(null);
         site.setStatusTime(LocalDateTime.now());
         siteRepository.save(site);
+        siteRegistry.register(site);
 
         try {
             final URL parsedInput = new URL(url);
-            Connection.Response resp;
+            Page stored = pageRepository.findByPathAndSite(PageWriter.pagePath(parsedInput), site).orElse(null);
+            String etag = stored == null ? null : stored.getEtag();
+            String lastModified = stored == null ? null : stored.getLastModified();
+
+            FetchResult resp;
             try {
-                resp = httpGet(parsedInput.toString());
+                resp = pageFetcher.fetch(parsedInput.toString(), etag, lastModified);
             } catch (UnknownHostException uh) {
                 URL alt = toggleWww(parsedInput);
                 if (alt == null) throw uh;
-                resp = httpGet(alt.toString());
+                resp = pageFetcher.fetch(alt.toString(), etag, lastModified);
             }
 
-            int code = resp.statusCode();
-            String contentType = Optional.ofNullable(resp.contentType())
-                    .orElse("")
-                    .toLowerCase(Locale.ROOT);
+            if (resp.isNotModified()) {
+                site.setStatus(Status.INDEXED);
+                site.setStatusTime(LocalDateTime.now());
+                siteRepository.save(site);
+                return site;
+            }
 
-            if (!contentType.contains("text/html")) {
+            if (!resp.isHtml()) {
                 failSite(site, "Некорректный Content-Type");
-                return;
+                return site;
             }
 
-            URL usedUrl = new URL(resp.url().toString());
-            String path = buildPathFromUrl(usedUrl);
+            int code = resp.getStatusCode();
+            URL usedUrl = new URL(resp.getUrl());
+            String path = PageWriter.pagePath(usedUrl);
 
             deleteAllByPathAndSiteSafe(site, path);
+            indexGeneration.advance();
 
-            String body = resp.body();
+            Document doc = resp.parse();
+            PageAnalysis analysis = PageAnalyzer.analyze(doc);
             Page page = new Page();
             page.setSite(site);
             page.setPath(path);
             page.setCode(code);
-            page.setContent(body);
+            String html = doc.html();
+            page.setTitle(analysis.getTitle());
+            page.setContentHash(PageWriter.contentHash(html));
+            page.setEtag(resp.getEtag());
+            page.setLastModified(resp.getLastModified());
             Page savedPage = pageRepository.save(page);
+            pageContentStore.save(savedPage.getId(), html, analysis.getText(), analysis.getLinks());
 
-            if (code == 200 && contentType.contains("text/html")) {
-                Document doc = resp.parse();
+            if (code == 200) {
                 try {
-                    lemmaProcessor.processAndSaveLemmas(doc.html(), site, savedPage);
+                    lemmaProcessor.upsertLemmas(lemmaProcessor.lemmaPositions(analysis.getWords()), site, savedPage);
                 } catch (RuntimeException ignored) {
                 }
             }
+            siteRegistry.recount(site.getId());
+            siteRegistry.persist(site.getId());
+            indexGeneration.advance();
 
             site.setStatus(Status.INDEXED);
             site.setLastError(code == 200 ? null : ("HTTP " + code + " при индексации " + path));
@@ -256,8 +480,6 @@ public class IndexingService {
             failSite(site, "Хост не найден");
         } catch (SSLHandshakeException e) {
             failSite(site, "Ошибка SSL-соединения");
-        } catch (HttpStatusException e) {
-            failSite(site, "HTTP " + e.getStatusCode());
         } catch (DataIntegrityViolationException e) {
             failSite(site, "Нарушение ограничений БД (возможен слишком длинный путь или дубли)");
         } catch (IOException e) {
@@ -265,6 +487,7 @@ public class IndexingService {
         } catch (Exception e) {
             failSite(site, "Не удалось проиндексировать: " + e.getClass().getSimpleName());
         }
+        return site;
     }
 
     private String normalizeRoot(String url) {
@@ -304,39 +527,21 @@ public class IndexingService {
         }
     }
 
-    private Connection.Response httpGet(String url) throws IOException {
-        return Jsoup.connect(url)
-                .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (HTML, like Gecko) Chrome/127.0.0.0 Safari/537.36")
-                .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8")
-                .header("Accept-Language", "ru,en;q=0.9")
-                .referrer("https://www.google.com")
-                .timeout(30000)
-                .ignoreHttpErrors(true)
-                .followRedirects(true)
-                .execute();
-    }
-
-    private String buildPathFromUrl(URL u) {
-        String path = (u.getPath() == null || u.getPath().isBlank()) ? "/" : u.getPath();
-        if (!path.startsWith("/")) path = "/" + path;
-        String query = u.getQuery();
-        if (query != null && !query.isEmpty()) path = path + "?" + query;
-        if (path.length() > 512) path = path.substring(0, 512);
-        return path;
-    }
-
     private void deleteAllByPathAndSiteSafe(Site site, String path) {
         pageRepository.findByPathAndSite(path, site).ifPresent(oldPage -> {
             var indices = pageIndexRepository.findAllByPage(oldPage);
+            List<Integer> lemmaIds = new ArrayList<>(indices.size());
 
             indices.forEach(idx -> {
                 var lemma = idx.getLemma();
                 int newFreq = Math.max(0, lemma.getFrequency() - 1);
                 lemma.setFrequency(newFreq);
                 lemmaRepository.save(lemma);
+                lemmaIds.add(lemma.getId());
             });
             pageIndexRepository.deleteAllByPage(oldPage);
             pageRepository.delete(oldPage);
+            invertedIndex.removePage(site.getId(), oldPage.getId(), lemmaIds);
         });
     }
 }
@@ -0,0 +1,44 @@
+package searchengine.services;
+
+import lombok.Getter;
+import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResultItem;
+
+import java.util.ArrayList;
+
+/**
+ * Gathers what a search emits into a regular {@link SearchResponse}, passing every piece on to
+ * {@code downstream} when one is given.
+ */
+class SearchResponseCollector implements SearchResultSink {
+
+    private final SearchResultSink downstream;
+    @Getter
+    private final SearchResponse response = new SearchResponse();
+
+    SearchResponseCollector(SearchResultSink downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void count(int count, boolean approximate) {
+        response.setResult(true);
+        response.setCount(count);
+        response.setApproximateCount(approximate);
+        response.setData(new ArrayList<>());
+        if (downstream != null) downstream.count(count, approximate);
+    }
+
+    @Override
+    public void item(SearchResultItem item) {
+        response.getData().add(item);
+        if (downstream != null) downstream.item(item);
+    }
+
+    @Override
+    public void error(String error) {
+        response.setResult(false);
+        response.setError(error);
+        if (downstream != null) downstream.error(error);
+    }
+}
@@ -0,0 +1,111 @@
+package searchengine.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.dto.search.SearchCacheStatistics;
+import searchengine.dto.search.SearchResponse;
+import searchengine.index.IndexGeneration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Finished search responses by query lemmas, highlighted words, quoted phrases, site and result window.
+ * Keys carry the index generation they were computed under, so a reindex makes older entries unreachable
+ * and size or age eviction drops them.
+ */
+@Component
+public class SearchResultCache implements MeterBinder {
+
+    private final IndexGeneration indexGeneration;
+    private final boolean enabled;
+    private final Cache<Key, SearchResponse> cache;
+
+    public SearchResultCache(IndexGeneration indexGeneration,
+                             @Value("${search.cache.enabled:true}") boolean enabled,
+                             @Value("${search.cache.maxSize:1000}") long maxSize,
+                             @Value("${search.cache.ttlSeconds:300}") long ttlSeconds) {
+        this.indexGeneration = indexGeneration;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public SearchResponse getIfPresent(Collection<String> lemmas, Collection<String> words,
+                                       List<Map<String, int[]>> phrases, String site, int offset, int limit) {
+        if (!enabled) return null;
+        return cache.getIfPresent(key(indexGeneration.current(), lemmas, words, phrases, site, offset, limit));
+    }
+
+    /**
+     * Stores a response computed under {@code generation}; a reindex that finished meanwhile has already
+     * moved the current generation on, so the entry is never served.
+     */
+    public void put(long generation, Collection<String> lemmas, Collection<String> words,
+                    List<Map<String, int[]>> phrases, String site, int offset, int limit, SearchResponse response) {
+        if (!enabled) return;
+        cache.put(key(generation, lemmas, words, phrases, site, offset, limit), response);
+    }
+
+    public long generation() {
+        return indexGeneration.current();
+    }
+
+    public SearchCacheStatistics getStatistics() {
+        CacheStats stats = cache.stats();
+        SearchCacheStatistics statistics = new SearchCacheStatistics();
+        statistics.setSize(cache.estimatedSize());
+        statistics.setHits(stats.hitCount());
+        statistics.setMisses(stats.missCount());
+        statistics.setHitRate(stats.hitRate());
+        statistics.setMissRate(stats.missRate());
+        statistics.setEvictions(stats.evictionCount());
+        statistics.setGeneration(indexGeneration.current());
+        return statistics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "search.results");
+        Gauge.builder("search.index.generation", indexGeneration, IndexGeneration::current)
+                .register(registry);
+    }
+
+    private static Key key(long generation, Collection<String> lemmas, Collection<String> words,
+                           List<Map<String, int[]>> phrases, String site, int offset, int limit) {
+        return new Key(generation, lemmas.stream().sorted().toList(), words.stream().sorted().toList(),
+                phrases.stream().map(SearchResultCache::phraseKey).sorted().toList(), site, offset, limit);
+    }
+
+    /**
+     * The lemmas of a phrase with their offsets, in phrase order, e.g. {@code 0:мастер 2:маргарита}.
+     */
+    private static String phraseKey(Map<String, int[]> phrase) {
+        List<Map.Entry<Integer, String>> terms = new ArrayList<>();
+        phrase.forEach((lemma, offsets) -> {
+            for (int offset : offsets) {
+                terms.add(Map.entry(offset, lemma));
+            }
+        });
+        terms.sort(Map.Entry.<Integer, String>comparingByKey().thenComparing(Map.Entry.comparingByValue()));
+        return terms.stream().map(term -> term.getKey() + ":" + term.getValue()).collect(Collectors.joining(" "));
+    }
+
+    private record Key(long generation, List<String> lemmas, List<String> words, List<String> phrases,
+                       String site, int offset, int limit) {
+    }
+}
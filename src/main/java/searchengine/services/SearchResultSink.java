@@ -0,0 +1,16 @@
+package searchengine.services;
+
+import searchengine.dto.search.SearchResultItem;
+
+/**
+ * Receives a search result piece by piece: either {@link #error} alone, or {@link #count} followed by the
+ * items of the requested window in relevance order, each as soon as its snippet is built.
+ */
+public interface SearchResultSink {
+
+    void count(int count, boolean approximate);
+
+    void item(SearchResultItem item);
+
+    void error(String error);
+}
@@ -1,7 +1,12 @@
 package searchengine.services;
 
+import searchengine.dto.search.SearchCacheStatistics;
 import searchengine.dto.search.SearchResponse;
 
 public interface SearchService {
     SearchResponse search(String query, String site, int offset, int limit);
+
+    void search(String query, String site, int offset, int limit, SearchResultSink sink);
+
+    SearchCacheStatistics getCacheStatistics();
 }
\ No newline at end of file
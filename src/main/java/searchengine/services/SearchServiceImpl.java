@@ -1,17 +1,34 @@
 package searchengine.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Jsoup;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.search.SearchCacheStatistics;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.search.SearchResultItem;
-import searchengine.model.*;
+import searchengine.index.InvertedIndex;
+import searchengine.index.PostingList;
+import searchengine.index.PostingList.Postings;
+import searchengine.index.Positions;
+import searchengine.index.SearchHits;
+import searchengine.index.SiteRanker;
+import searchengine.index.SiteRanker.Ranking;
+import searchengine.index.SiteRegistry;
+import searchengine.index.SiteRegistry.SiteEntry;
+import searchengine.index.TopK;
 import searchengine.morphology.LemmaProcessor;
+import searchengine.morphology.WordCounts;
 import searchengine.repository.*;
+import searchengine.repository.LemmaRepository.LemmaRow;
+import searchengine.repository.PageIndexRepository.PositionRow;
+import searchengine.repository.PageIndexRepository.RankRow;
+import searchengine.repository.PageRepository.PageSummary;
 
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -22,13 +39,30 @@ public class SearchServiceImpl implements SearchService {
 
     private final LemmaRepository lemmaRepository;
     private final PageRepository pageRepository;
+    private final PageContentStore pageContentStore;
     private final PageIndexRepository pageIndexRepository;
-    private final SiteRepository siteRepository;
+    private final SiteRegistry siteRegistry;
     private final LemmaProcessor lemmaProcessor;
+    private final InvertedIndex invertedIndex;
+    private final SearchResultCache searchResultCache;
+    private final SiteRanker siteRanker;
+    private final MeterRegistry meterRegistry;
 
     @Value("${search.tooCommonPercent:0.6}")
     private double tooCommonPercent;
 
+    @Value("${search.exactCount:true}")
+    private boolean exactCount;
+
+    @Value("${search.proximityWeight:0.5}")
+    private double proximityWeight;
+
+    @Value("${search.proximityWindow:100}")
+    private int proximityWindow;
+
+    @Value("${search.phraseCandidates:10000}")
+    private int phraseCandidates;
+
     private static final Set<String> STOP_LEMMAS = Set.of(
             "и", "в", "во", "не", "на", "я", "с", "со", "как", "а",
             "то", "все", "она", "так", "его", "но",
@@ -36,292 +70,372 @@ public class SearchServiceImpl implements SearchService {
             "with","as","at","by","an","be","this","from","or"
     );
 
-    private static final int SNIPPET_LEN = 160;
-    private static final int HALF = SNIPPET_LEN / 2;
-    private static final String ELLIPSIS = "...";
+    private static final int LEMMAS_PER_QUERY = 500;
+    private static final int POSITION_PAGES_PER_QUERY = 500;
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]*)\"|«([^»]*)»");
 
     @Override
     @Transactional(readOnly = true)
     public SearchResponse search(String query, String siteUrl, int offset, int limit) {
+        SearchResponseCollector collector = new SearchResponseCollector(null);
+        search(query, siteUrl, offset, limit, collector);
+        return collector.getResponse();
+    }
+
+    /**
+     * Timed as {@code search.request} by outcome: {@code invalid} queries, {@code cached} replies,
+     * {@code computed} searches and {@code partial} ones that left out a site past the deadline and are
+     * therefore not cached; the stages of the last two are timed as {@code search.stage}.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void search(String query, String siteUrl, int offset, int limit, SearchResultSink sink) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failed";
+        try {
+            outcome = execute(query, siteUrl, offset, limit, sink);
+        } finally {
+            sample.stop(Timer.builder("search.request").tag("outcome", outcome).register(meterRegistry));
+        }
+    }
+
+    private String execute(String query, String siteUrl, int offset, int limit, SearchResultSink sink) {
         siteUrl = (siteUrl == null || siteUrl.isBlank()) ? null : siteUrl.trim();
-        SearchResponse response = new SearchResponse();
         if (query == null || query.trim().isEmpty()) {
-            return errorResponse(response, "Задан пустой поисковый запрос");
+            sink.error("Задан пустой поисковый запрос");
+            return "invalid";
         }
 
-        List<String> lemmaList = lemmaProcessor.collectLemmas(query)
+        List<String> lemmaList = timed("lemmatize", () -> lemmaProcessor.collectLemmas(query))
                 .keySet()
                 .stream()
                 .filter(l -> !STOP_LEMMAS.contains(l))
                 .collect(Collectors.toList());
 
         if (lemmaList.isEmpty()) {
-            return errorResponse(response, "Нет значимых слов для поиска");
+            sink.error("Нет значимых слов для поиска");
+            return "invalid";
         }
 
-        List<Lemma> lemmaEntities = getLemmaEntities(lemmaList, siteUrl);
-        if (lemmaEntities.isEmpty()) {
-            return emptyResponse(response);
+        Set<String> words = SnippetBuilder.queryWords(query);
+        List<Map<String, int[]>> phrases = phrases(query);
+        SearchResponse cached = searchResultCache.getIfPresent(lemmaList, words, phrases, siteUrl, offset, limit);
+        if (cached != null) {
+            replay(cached, sink);
+            return "cached";
         }
 
-        long totalPages = getTotalPages(siteUrl);
-        double tooCommonThreshold = totalPages * tooCommonPercent;
+        long generation = searchResultCache.generation();
+        SearchResponseCollector collector = new SearchResponseCollector(sink);
+        if (!search(collector, lemmaList, phrases, siteUrl, query, offset, limit)) {
+            return "partial";
+        }
+        searchResultCache.put(generation, lemmaList, words, phrases, siteUrl, offset, limit,
+                collector.getResponse());
+        return "computed";
+    }
 
-        List<Lemma> filteredLemmas = lemmaEntities.stream()
-                .filter(l -> l.getFrequency() <= tooCommonThreshold)
-                .sorted(Comparator.comparingInt(Lemma::getFrequency))
-                .collect(Collectors.toList());
+    @Override
+    public SearchCacheStatistics getCacheStatistics() {
+        return searchResultCache.getStatistics();
+    }
 
-        if (filteredLemmas.isEmpty()) {
-            return errorResponse(response, "Нет подходящих лемм для поиска");
+    /**
+     * Lemma offsets of every quoted phrase of the query, in "straight" or «angle» quotes. Phrases of a single
+     * word are left out, since any page matching the query contains them.
+     */
+    private List<Map<String, int[]>> phrases(String query) {
+        List<Map<String, int[]>> phrases = new ArrayList<>();
+        Matcher matcher = PHRASE.matcher(query);
+        while (matcher.find()) {
+            String text = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            Map<String, int[]> phrase = lemmaProcessor.lemmaPositions(WordCounts.of(text));
+            phrase.keySet().removeAll(STOP_LEMMAS);
+            if (phrase.values().stream().mapToInt(offsets -> offsets.length).sum() > 1) {
+                phrases.add(phrase);
+            }
         }
+        return phrases;
+    }
 
-        Set<Page> pages = findPagesByLemmas(filteredLemmas, siteUrl);
-        if (pages.isEmpty()) {
-            return emptyResponse(response);
+    /**
+     * Emits the response and tells whether it is complete; it is not when a site missed the deadline.
+     */
+    private boolean search(SearchResultSink sink, List<String> lemmaList, List<Map<String, int[]>> phrases,
+                           String siteUrl, String query, int offset, int limit) {
+        if (invertedIndex.isReady()) {
+            return searchInMemory(sink, lemmaList, phrases, siteUrl, query, offset, limit);
         }
 
-        Map<Page, Float> relevanceMap = calculateRelevance(pages, filteredLemmas);
-        float maxAbsRel = relevanceMap.values().stream().max(Float::compare).orElse(1f);
+        List<LemmaRow> lemmaEntities = timed("lemmas", () -> getLemmaEntities(lemmaList, siteUrl));
+        if (lemmaEntities.isEmpty()) {
+            sink.count(0, false);
+            return true;
+        }
 
-        List<SearchResultItem> resultItems = relevanceMap.entrySet().stream()
-                .sorted((a, b) -> Float.compare(b.getValue(),
-                        a.getValue()))
-                .skip(offset)
-                .limit(limit)
-                .map(entry -> pageToResult(entry.getKey(), entry.getValue(),
-                        maxAbsRel, filteredLemmas, query))
-                .collect(Collectors.toList());
+        long totalPages = getTotalPages(siteUrl);
+        double tooCommonThreshold = totalPages * tooCommonPercent;
 
-        response.setResult(true);
-        response.setCount(relevanceMap.size());
-        response.setData(resultItems);
-        return response;
-    }
+        List<LemmaRow> filteredLemmas = lemmaEntities.stream()
+                .filter(l -> l.getFrequency() <= tooCommonThreshold)
+                .sorted(Comparator.comparingInt(LemmaRow::getFrequency))
+                .collect(Collectors.toList());
 
-    private SearchResponse errorResponse(SearchResponse resp, String error) {
-        resp.setResult(false);
-        resp.setError(error);
-        return resp;
-    }
+        if (filteredLemmas.isEmpty()) {
+            sink.error("Нет подходящих лемм для поиска");
+            return true;
+        }
 
-    private SearchResponse emptyResponse(SearchResponse resp) {
-        resp.setResult(true);
-        resp.setCount(0);
-        resp.setData(List.of());
-        return resp;
+        Map<Integer, String> lemmaById = new HashMap<>();
+        lemmaEntities.forEach(lemma -> lemmaById.put(lemma.getId(), lemma.getLemma()));
+        return rank(sink, timed("postings", () -> loadPostings(filteredLemmas)), lemmaById,
+                lemmaStrings(filteredLemmas), phrases, query, offset, limit);
     }
 
-    private List<Lemma> getLemmaEntities(List<String> lemmas, String siteUrl) {
+    private boolean searchInMemory(SearchResultSink sink, List<String> lemmaList,
+                                   List<Map<String, int[]>> phrases, String siteUrl, String query,
+                                   int offset, int limit) {
+        Integer siteId = null;
         if (siteUrl != null) {
-            return siteRepository.findByUrl(siteUrl)
-                    .map(site -> lemmaRepository.findByLemmaInAndSiteId(lemmas,
-                            site.getId()))
-                    .orElse(List.of());
+            Optional<SiteEntry> site = siteRegistry.findByUrl(siteUrl);
+            if (site.isEmpty()) {
+                sink.count(0, false);
+                return true;
+            }
+            siteId = site.get().getId();
         }
-        return lemmaRepository.findByLemmaIn(lemmas);
-    }
 
-    private long getTotalPages(String siteUrl) {
-        if (siteUrl != null) {
-            return siteRepository.findByUrl(siteUrl)
-                    .map(pageRepository::countBySite)
-                    .orElse(1L);
+        Integer site = siteId;
+        Map<Integer, List<PostingList>> bySite = timed("postings", () -> invertedIndex.find(lemmaList, site));
+        if (bySite.isEmpty()) {
+            sink.count(0, false);
+            return true;
         }
-        return pageRepository.count();
-    }
 
-    private Set<Page> findPagesByLemmas(List<Lemma> lemmas, String siteUrl) {
-        Integer requiredSiteId = resolveSiteId(siteUrl);
-        if (requiredSiteId != null) {
-            return intersectPagesForSite(lemmas.stream()
-                    .filter(l -> l.getSite().getId() == requiredSiteId)
-                    .collect(Collectors.toList()));
+        double tooCommonThreshold = invertedIndex.documentCount(siteId) * tooCommonPercent;
+        Set<String> terms = new LinkedHashSet<>();
+        Map<Integer, String> lemmaById = new HashMap<>();
+        Map<Integer, List<Postings>> postingsBySite = new HashMap<>();
+        for (Map.Entry<Integer, List<PostingList>> entry : bySite.entrySet()) {
+            for (PostingList list : entry.getValue()) {
+                lemmaById.put(list.getLemmaId(), list.getLemma());
+                Postings postings = list.snapshot();
+                if (postings.size() > 0 && postings.size() <= tooCommonThreshold) {
+                    postingsBySite.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(postings);
+                    terms.add(list.getLemma());
+                }
+            }
         }
 
-        Map<Integer, List<Lemma>> bySite = lemmas.stream()
-                .collect(Collectors.groupingBy(l -> l.getSite().getId()));
-
-        Set<Page> union = new HashSet<>();
-        for (List<Lemma> siteLemmas : bySite.values()) {
-            Set<Page> pagesForSite = intersectPagesForSite(siteLemmas);
-            union.addAll(pagesForSite);
+        if (terms.isEmpty()) {
+            sink.error("Нет подходящих лемм для поиска");
+            return true;
         }
-        return union;
+        return rank(sink, postingsBySite, lemmaById, terms, phrases, query, offset, limit);
     }
 
-    private Set<Page> intersectPagesForSite(List<Lemma> siteLemmas) {
-        if (siteLemmas.isEmpty()) return Collections.emptySet();
-        List<Set<Page>> lemmaPages = new ArrayList<>();
-        for (Lemma lemma : siteLemmas) {
-            Set<Page> pages = pageIndexRepository.findByLemmaId(lemma.getId()).stream()
-                    .map(PageIndex::getPage)
-                    .collect(Collectors.toSet());
-            if (!pages.isEmpty()) {
-                lemmaPages.add(pages);
-            }
+    private Map<Integer, List<Postings>> loadPostings(List<LemmaRow> lemmas) {
+        Map<Integer, Integer> siteByLemma = new HashMap<>();
+        for (LemmaRow lemma : lemmas) {
+            siteByLemma.put(lemma.getId(), lemma.getSiteId());
         }
-        if (lemmaPages.isEmpty()) return Collections.emptySet();
-        Set<Page> result = new HashSet<>(lemmaPages.get(0));
-        for (int i = 1; i < lemmaPages.size(); i++) {
-            result.retainAll(lemmaPages.get(i));
-            if (result.isEmpty()) break;
+        List<Integer> lemmaIds = new ArrayList<>(siteByLemma.keySet());
+
+        Map<Integer, List<Postings>> bySite = new HashMap<>();
+        for (int from = 0; from < lemmaIds.size(); from += LEMMAS_PER_QUERY) {
+            List<RankRow> rows = pageIndexRepository.findRanksByLemmaIds(
+                    lemmaIds.subList(from, Math.min(lemmaIds.size(), from + LEMMAS_PER_QUERY)));
+            int start = 0;
+            while (start < rows.size()) {
+                int lemmaId = rows.get(start).getLemmaId();
+                int end = start;
+                while (end < rows.size() && rows.get(end).getLemmaId() == lemmaId) {
+                    end++;
+                }
+                int[] pages = new int[end - start];
+                float[] ranks = new float[end - start];
+                for (int i = start; i < end; i++) {
+                    pages[i - start] = rows.get(i).getPageId();
+                    ranks[i - start] = rows.get(i).getRank();
+                }
+                bySite.computeIfAbsent(siteByLemma.get(lemmaId), k -> new ArrayList<>())
+                        .add(Postings.of(pages, ranks, pages.length));
+                start = end;
+            }
         }
-        return result;
+        return bySite;
     }
 
-    private Integer resolveSiteId(String siteUrl) {
-        if (siteUrl == null) return null;
-        return siteRepository.findByUrl(siteUrl).map(Site::getId).orElse(null);
-    }
+    /**
+     * Emits the count, then the items of the window. Page texts are fetched in batches of 1, 2, 4, ...
+     * pages, so the first snippet goes out after one small query and the whole window still takes only a
+     * logarithmic number of round trips. Returns whether every site was ranked within the deadline.
+     */
+    private boolean rank(SearchResultSink sink, Map<Integer, List<Postings>> bySite,
+                         Map<Integer, String> lemmaById, Collection<String> terms,
+                         List<Map<String, int[]>> phrases, String query, int offset, int limit) {
+        int from = Math.max(offset, 0);
+        int k = (int) Math.min(Integer.MAX_VALUE, (long) from + Math.max(limit, 0));
+        Set<String> distinctTerms = new LinkedHashSet<>(terms);
+        boolean proximity = distinctTerms.size() > 1 && proximityWeight > 0;
+        int candidates = !phrases.isEmpty() ? Math.max(k, phraseCandidates)
+                : proximity ? Math.max(k, proximityWindow) : k;
+        Ranking ranked = timed("rank", () -> siteRanker.rank(bySite, candidates, exactCount));
+        Ranking ranking = phrases.isEmpty() && !proximity
+                ? ranked
+                : timed("positions", () -> rerank(ranked, lemmaById, distinctTerms, phrases, proximity, k));
+        sink.count(ranking.getCount(), ranking.isApproximate());
+        if (ranking.getCount() == 0 && !ranking.isApproximate()) {
+            return true;
+        }
 
-    private Map<Page, Float> calculateRelevance(Set<Page> pages, List<Lemma> lemmas) {
-        Map<Page, Float> map = new HashMap<>();
-        for (Page page : pages) {
-            float sum = 0f;
-            for (Lemma lemma : lemmas) {
-                sum += pageIndexRepository.findByPageIdAndLemmaId(page.getId(),
-                                lemma.getId())
-                        .map(PageIndex::getRank)
-                        .orElse(0f);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        SearchHits hits = ranking.getHits();
+        float maxAbsRel = hits.getSize() > 0 ? hits.getScores()[0] : 1f;
+        List<Integer> slice = new ArrayList<>();
+        for (int i = from; i < hits.getSize(); i++) {
+            slice.add(hits.getPageIds()[i]);
+        }
+        Map<Integer, PageSummary> pages = pageRepository.findSummariesByIdIn(slice).stream()
+                .collect(Collectors.toMap(PageSummary::getId, page -> page));
+        TermMatcher matcher = SnippetBuilder.matcher(terms, query);
+
+        for (int start = 0, batch = 1; start < slice.size(); start += batch, batch *= 2) {
+            int end = Math.min(slice.size(), start + batch);
+            Map<Integer, String> texts = pageContentStore.findTexts(slice.subList(start, end));
+            for (int i = start; i < end; i++) {
+                PageSummary page = pages.get(slice.get(i));
+                if (page != null) {
+                    sink.item(pageToResult(page, texts.get(page.getId()), hits.getScores()[from + i], maxAbsRel,
+                            matcher));
+                }
             }
-            map.put(page, sum);
         }
-        return map;
+        sample.stop(stageTimer("results"));
+        return !ranking.isTimedOut();
     }
 
-    private SearchResultItem pageToResult(Page page, float absRel, float maxAbsRel,
-                                          List<Lemma> lemmas, String query) {
-        SearchResultItem item = new SearchResultItem();
-        Site site = page.getSite();
-        item.setSite(site.getUrl());
-        item.setSiteName(site.getName());
-        item.setUri(page.getPath());
-        item.setTitle(extractTitle(page.getContent()));
-        item.setSnippet(makeSnippet(page.getContent(), lemmas, query));
-        item.setRelevance(absRel / maxAbsRel);
-        return item;
-    }
-
-    private String extractTitle(String html) {
-        int start = html.indexOf("<title>");
-        int end = html.indexOf("</title>");
-        if (start != -1 && end != -1 && end > start) {
-            return html.substring(start + 7, end);
+    /**
+     * Drops the hits that lack a quoted phrase and boosts the rest by how close together the query lemmas
+     * occur, reading the word positions of the hits from the in-memory index, or from page_index while it
+     * is not ready. Without phrases only the best {@code proximityWindow} hits are checked; the boost only
+     * raises scores, so they stay ahead of the hits that were not. With phrases every candidate is checked
+     * and the count is that of the pages holding the phrases, a lower bound when there were more candidates
+     * than {@code phraseCandidates}.
+     */
+    private Ranking rerank(Ranking ranking, Map<Integer, String> lemmaById, Set<String> terms,
+                           List<Map<String, int[]>> phrases, boolean proximity, int k) {
+        SearchHits hits = ranking.getHits();
+        int checked = phrases.isEmpty() ? Math.min(hits.getSize(), proximityWindow) : hits.getSize();
+        TopK top = new TopK(k);
+        int rejected = 0;
+        for (int start = 0; start < checked; start += POSITION_PAGES_PER_QUERY) {
+            int end = Math.min(checked, start + POSITION_PAGES_PER_QUERY);
+            List<Integer> pageIds = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                pageIds.add(hits.getPageIds()[i]);
+            }
+            Map<Integer, Map<String, int[]>> positions = loadPositions(pageIds, lemmaById);
+            for (int i = start; i < end; i++) {
+                int pageId = hits.getPageIds()[i];
+                Map<String, int[]> page = positions.getOrDefault(pageId, Map.of());
+                if (!phrases.stream().allMatch(phrase -> Positions.containsPhrase(page, phrase))) {
+                    rejected++;
+                    continue;
+                }
+                float score = hits.getScores()[i];
+                top.offer(pageId, proximity ? score * proximityBoost(page, terms) : score);
+            }
         }
-        return "";
-    }
-
-    private String makeSnippet(String html, List<Lemma> lemmas, String query) {
-        String text = normalizeHtml(html);
-        String lower = text.toLowerCase(Locale.ROOT);
-
-        Set<String> terms = collectTerms(lemmas, query);
-        if (terms.isEmpty()) {
-            return shorten(text, SNIPPET_LEN);
+        for (int i = checked; i < hits.getSize(); i++) {
+            top.offer(hits.getPageIds()[i], hits.getScores()[i]);
         }
 
-        Pattern p = buildWordBoundaryPattern(terms);
-        Matcher m = p.matcher(lower);
-
-        List<int[]> windows = new ArrayList<>();
-        while (m.find()) {
-            int from = Math.max(0, m.start() - HALF);
-            int to   = Math.min(text.length(), m.end() + HALF);
-            windows.add(new int[]{from, to});
-        }
-        if (windows.isEmpty()) {
-            return shorten(text, SNIPPET_LEN);
+        if (phrases.isEmpty()) {
+            return new Ranking(top.drain(), ranking.getCount(), ranking.isApproximate(), ranking.isTimedOut());
         }
+        boolean truncated = ranking.getCount() > hits.getSize();
+        return new Ranking(top.drain(), hits.getSize() - rejected, ranking.isApproximate() || truncated,
+                ranking.isTimedOut());
+    }
 
-        List<int[]> merged = mergeOverlaps(windows);
-        if (merged.size() > 2) {
-            merged = merged.subList(0, 2);
+    /**
+     * {@code 1 + proximityWeight} when the lemmas stand next to each other, falling towards 1 as the
+     * shortest stretch of text holding all of them grows.
+     */
+    private float proximityBoost(Map<String, int[]> page, Set<String> terms) {
+        List<int[]> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            int[] positions = page.get(term);
+            if (positions == null || positions.length == 0) return 1f;
+            lists.add(positions);
         }
+        int closest = lists.size() - 1;
+        return (float) (1 + proximityWeight * closest / Math.max(Positions.minSpan(lists), closest));
+    }
 
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < merged.size(); i++) {
-            int[] w = merged.get(i);
-            String frag = text.substring(w[0], w[1]).trim();
-            if (w[0] > 0) frag = ELLIPSIS + " " + frag;
-            if (w[1] < text.length()) frag = frag + " " + ELLIPSIS;
-            if (i > 0) sb.append(" ").append(ELLIPSIS).append(" ");
-            sb.append(frag);
+    private Map<Integer, Map<String, int[]>> loadPositions(List<Integer> pageIds, Map<Integer, String> lemmaById) {
+        if (invertedIndex.isReady()) {
+            return invertedIndex.positions(pageIds, lemmaById);
         }
+        Map<Integer, Map<String, int[]>> byPage = new HashMap<>();
+        for (PositionRow row : pageIndexRepository.findPositions(pageIds, lemmaById.keySet())) {
+            byPage.computeIfAbsent(row.getPageId(), k -> new HashMap<>())
+                    .put(lemmaById.get(row.getLemmaId()), Positions.decode(row.getPositions()));
+        }
+        return byPage;
+    }
 
-        String snippet = highlight(sb.toString(), p);
-        return shorten(snippet, SNIPPET_LEN * 2);
+    private <T> T timed(String stage, Supplier<T> step) {
+        return stageTimer(stage).record(step);
     }
 
-    private String normalizeHtml(String html) {
-        String text = Jsoup.parse(html == null ? "" : html).text();
-        return text.replaceAll("\\s+", " ").trim();
+    private Timer stageTimer(String stage) {
+        return Timer.builder("search.stage").tag("stage", stage).register(meterRegistry);
     }
 
-    private Set<String> collectTerms(List<Lemma> lemmas, String query) {
-        Set<String> terms = new LinkedHashSet<>();
-        if (lemmas != null) {
-            for (Lemma l : lemmas) {
-                if (l == null || l.getLemma() == null) continue;
-                String t = l.getLemma().trim().toLowerCase(Locale.ROOT);
-                if (!t.isEmpty()) terms.add(t);
-            }
-        }
-        if (query != null) {
-            Arrays.stream(query.toLowerCase(Locale.ROOT).split("\\s+"))
-                    .map(String::trim).filter(s -> s.length() > 1)
-                    .forEach(terms::add);
+    private static void replay(SearchResponse response, SearchResultSink sink) {
+        if (!response.isResult()) {
+            sink.error(response.getError());
+            return;
         }
-        return terms;
+        sink.count(response.getCount(), response.isApproximateCount());
+        response.getData().forEach(sink::item);
     }
 
-    private Pattern buildWordBoundaryPattern(Set<String> terms) {
-        List<String> escaped = new ArrayList<>(terms.size());
-        for (String t : terms) {
-            if (!t.isEmpty()) escaped.add(Pattern.quote(t));
-        }
-        if (escaped.isEmpty()) {
-            return Pattern.compile("(?!x)x");
+    private List<LemmaRow> getLemmaEntities(List<String> lemmas, String siteUrl) {
+        if (siteUrl != null) {
+            return siteRegistry.findByUrl(siteUrl)
+                    .map(site -> lemmaRepository.findRowsByLemmaInAndSiteId(lemmas, site.getId()))
+                    .orElse(List.of());
         }
-        String alternation = String.join("|", escaped);
-        return Pattern.compile("\\b(" + alternation + ")\\b",
-                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return lemmaRepository.findRowsByLemmaIn(lemmas);
     }
 
-    private List<int[]> mergeOverlaps(List<int[]> windows) {
-        if (windows.size() <= 1) return windows;
-        windows.sort(Comparator.comparingInt(a -> a[0]));
-        List<int[]> res = new ArrayList<>();
-        int[] cur = Arrays.copyOf(windows.get(0), 2);
-        for (int i = 1; i < windows.size(); i++) {
-            int[] w = windows.get(i);
-            if (w[0] <= cur[1]) {
-                cur[1] = Math.max(cur[1], w[1]);
-            } else {
-                res.add(cur);
-                cur = Arrays.copyOf(w, 2);
-            }
+    private long getTotalPages(String siteUrl) {
+        if (siteUrl != null) {
+            return siteRegistry.findByUrl(siteUrl)
+                    .map(site -> (long) site.getPages())
+                    .orElse(1L);
         }
-        res.add(cur);
-        return res;
+        return siteRegistry.pageCount(null);
     }
 
-    private String highlight(String text, Pattern termPattern) {
-        Matcher m = termPattern.matcher(text);
-        StringBuilder out = new StringBuilder();
-        int last = 0;
-        while (m.find()) {
-            out.append(text, last, m.start());
-            out.append("<b>").append(text, m.start(), m.end()).append("</b>");
-            last = m.end();
-        }
-        out.append(text, last, text.length());
-        return out.toString();
+    private SearchResultItem pageToResult(PageSummary page, String text, float absRel, float maxAbsRel,
+                                          TermMatcher matcher) {
+        SearchResultItem item = new SearchResultItem();
+        siteRegistry.find(page.getSiteId()).ifPresent(site -> {
+            item.setSite(site.getUrl());
+            item.setSiteName(site.getName());
+        });
+        item.setUri(page.getPath());
+        item.setTitle(Objects.requireNonNullElse(page.getTitle(), ""));
+        item.setSnippet(SnippetBuilder.makeSnippet(Objects.requireNonNullElse(text, ""), matcher));
+        item.setRelevance(absRel / maxAbsRel);
+        return item;
     }
 
-    private String shorten(String text, int n) {
-        if (text == null) return "";
-        if (text.length() <= n) return text;
-        return text.substring(0, n) + ELLIPSIS;
+    private List<String> lemmaStrings(List<LemmaRow> lemmas) {
+        return lemmas.stream().map(LemmaRow::getLemma).collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package searchengine.services;
+
+import java.util.*;
+
+/**
+ * Builds the snippet of a search result: up to two windows of page text around occurrences of the query
+ * lemmas or words, with every occurrence wrapped in {@code <b>}.
+ */
+public final class SnippetBuilder {
+
+    private static final int SNIPPET_LEN = 160;
+    private static final int HALF = SNIPPET_LEN / 2;
+    private static final String ELLIPSIS = "...";
+
+    private SnippetBuilder() {
+    }
+
+    public static String makeSnippet(String text, Collection<String> lemmas, String query) {
+        return makeSnippet(text, matcher(lemmas, query));
+    }
+
+    /**
+     * Snippet of {@code text} for a matcher built once per search with {@link #matcher}. The text is
+     * scanned a single time; the windows and the highlighting both come from the same match offsets.
+     */
+    public static String makeSnippet(String text, TermMatcher matcher) {
+        int[] matches = matcher.find(text);
+        if (matches.length == 0) {
+            return shorten(text, SNIPPET_LEN);
+        }
+
+        List<int[]> windows = new ArrayList<>();
+        for (int i = 0; i < matches.length; i += 2) {
+            int from = Math.max(0, matches[i] - HALF);
+            int to   = Math.min(text.length(), matches[i + 1] + HALF);
+            windows.add(new int[]{from, to});
+        }
+
+        List<int[]> merged = mergeOverlaps(windows);
+        if (merged.size() > 2) {
+            merged = merged.subList(0, 2);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        int match = 0;
+        for (int i = 0; i < merged.size(); i++) {
+            int[] w = merged.get(i);
+            int from = w[0];
+            int to = w[1];
+            while (from < to && text.charAt(from) <= ' ') from++;
+            while (to > from && text.charAt(to - 1) <= ' ') to--;
+
+            if (i > 0) sb.append(" ").append(ELLIPSIS).append(" ");
+            if (w[0] > 0) sb.append(ELLIPSIS).append(" ");
+            while (match < matches.length && matches[match] < from) match += 2;
+            match = appendHighlighted(sb, text, from, to, matches, match);
+            if (w[1] < text.length()) sb.append(" ").append(ELLIPSIS);
+        }
+
+        return shorten(sb.toString(), SNIPPET_LEN * 2);
+    }
+
+    public static TermMatcher matcher(Collection<String> lemmas, String query) {
+        return TermMatcher.of(collectTerms(lemmas, query));
+    }
+
+    private static Set<String> collectTerms(Collection<String> lemmas, String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (lemmas != null) {
+            for (String l : lemmas) {
+                if (l == null) continue;
+                String t = l.trim().toLowerCase(Locale.ROOT);
+                if (!t.isEmpty()) terms.add(t);
+            }
+        }
+        terms.addAll(queryWords(query));
+        return terms;
+    }
+
+    public static Set<String> queryWords(String query) {
+        Set<String> words = new LinkedHashSet<>();
+        if (query != null) {
+            Arrays.stream(query.toLowerCase(Locale.ROOT).split("\\s+"))
+                    .map(String::trim).filter(s -> s.length() > 1)
+                    .forEach(words::add);
+        }
+        return words;
+    }
+
+    private static List<int[]> mergeOverlaps(List<int[]> windows) {
+        if (windows.size() <= 1) return windows;
+        windows.sort(Comparator.comparingInt(a -> a[0]));
+        List<int[]> res = new ArrayList<>();
+        int[] cur = Arrays.copyOf(windows.get(0), 2);
+        for (int i = 1; i < windows.size(); i++) {
+            int[] w = windows.get(i);
+            if (w[0] <= cur[1]) {
+                cur[1] = Math.max(cur[1], w[1]);
+            } else {
+                res.add(cur);
+                cur = Arrays.copyOf(w, 2);
+            }
+        }
+        res.add(cur);
+        return res;
+    }
+
+    public static String highlight(String text, TermMatcher matcher) {
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        appendHighlighted(out, text, 0, text.length(), matcher.find(text), 0);
+        return out.toString();
+    }
+
+    /**
+     * Appends {@code text[from, to)} with the matches from index {@code match} on that lie inside it wrapped
+     * in {@code <b>}, and returns the index of the first match not used.
+     */
+    private static int appendHighlighted(StringBuilder out, String text, int from, int to, int[] matches, int match) {
+        int last = from;
+        while (match < matches.length && matches[match + 1] <= to) {
+            out.append(text, last, matches[match]);
+            out.append("<b>").append(text, matches[match], matches[match + 1]).append("</b>");
+            last = matches[match + 1];
+            match += 2;
+        }
+        out.append(text, last, to);
+        return match;
+    }
+
+    private static String shorten(String text, int n) {
+        if (text == null) return "";
+        if (text.length() <= n) return text;
+        return text.substring(0, n) + ELLIPSIS;
+    }
+}
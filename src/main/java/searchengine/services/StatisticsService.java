@@ -1,7 +1,10 @@
 package searchengine.services;
 
+import searchengine.dto.statistics.CacheStatistics;
 import searchengine.dto.statistics.StatisticsResponse;
 
 public interface StatisticsService {
     StatisticsResponse getStatistics();
+
+    CacheStatistics getLemmaCacheStatistics();
 }
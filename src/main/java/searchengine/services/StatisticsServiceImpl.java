@@ -4,33 +4,47 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.AppConfig;
+import searchengine.dto.statistics.CacheStatistics;
 import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
+import searchengine.index.SiteRegistry;
+import searchengine.index.SiteRegistry.SiteEntry;
 import searchengine.model.Site;
 import searchengine.model.Status;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageRepository;
+import searchengine.morphology.LemmaProcessor;
 import searchengine.repository.SiteRepository;
 
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
 
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final SiteRegistry siteRegistry;
     private final AppConfig appConfig;
+    private final LemmaProcessor lemmaProcessor;
 
+    @Override
+    public CacheStatistics getLemmaCacheStatistics() {
+        return lemmaProcessor.getCacheStatistics();
+    }
+
+    /**
+     * Served from the site rows and the counters of {@link SiteRegistry}, without counting pages or lemmas.
+     */
     @Override
     @Transactional(readOnly = true)
     public StatisticsResponse getStatistics() {
         List<Site> allSites = siteRepository.findAll();
+        Map<String, Site> sitesByUrl = allSites.stream()
+                .collect(Collectors.toMap(Site::getUrl, site -> site, (a, b) -> a));
         TotalStatistics total = new TotalStatistics();
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
 
@@ -40,28 +54,24 @@ public class StatisticsServiceImpl implements StatisticsService {
         total.setIndexing(allSites.stream().anyMatch(s -> s.getStatus() == Status.INDEXING));
 
         for (var siteConfig : appConfig.getSites()) {
-            Site site = allSites.stream()
-                    .filter(s -> s.getUrl().equals(siteConfig.getUrl()))
-                    .findFirst()
-                    .orElse(null);
+            Site site = sitesByUrl.get(siteConfig.getUrl());
 
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setUrl(siteConfig.getUrl());
             item.setName(siteConfig.getName());
 
             if (site != null) {
-                long pagesL = pageRepository.countBySite(site);
-                long lemmasL = lemmaRepository.countBySiteId(site.getId());
-
+                int pages = siteRegistry.find(site.getId()).map(SiteEntry::getPages).orElse(0);
+                int lemmas = siteRegistry.find(site.getId()).map(SiteEntry::getLemmas).orElse(0);
 
                 item.setStatus(site.getStatus().name());
                 item.setStatusTime(site.getStatusTime().toInstant(ZoneOffset.UTC).toEpochMilli());
                 item.setError(site.getLastError());
-                item.setPages((int) pagesL);
-                item.setLemmas((int) lemmasL);
+                item.setPages(pages);
+                item.setLemmas(lemmas);
 
-                total.setPages(total.getPages() + (int) pagesL);
-                total.setLemmas(total.getLemmas() + (int) lemmasL);
+                total.setPages(total.getPages() + pages);
+                total.setLemmas(total.getLemmas() + lemmas);
             } else {
                 item.setStatus(Status.FAILED.name());
                 item.setStatusTime(System.currentTimeMillis());
@@ -0,0 +1,173 @@
+package searchengine.services;
+
+import java.util.*;
+
+/**
+ * Finds whole-word occurrences of a fixed set of terms, ignoring case, in one pass over the text. The terms
+ * are compiled into an Aho-Corasick automaton, so the cost of a scan does not depend on how many terms
+ * there are. A match must start and end on a word boundary in the sense of regex {@code \b}; of
+ * overlapping matches the leftmost wins, and of those starting at the same place the longest.
+ */
+public final class TermMatcher {
+
+    private static final int DIRECT_CLASSES = 0x530;
+    private static final int[] NO_MATCHES = new int[0];
+
+    private final int[] directClass;
+    private final char[] otherChars;
+    private final int classes;
+    private final int[] next;
+    private final int[][] lengths;
+
+    private TermMatcher(int[] directClass, char[] otherChars, int classes, int[] next, int[][] lengths) {
+        this.directClass = directClass;
+        this.otherChars = otherChars;
+        this.classes = classes;
+        this.next = next;
+        this.lengths = lengths;
+    }
+
+    public static TermMatcher of(Collection<String> terms) {
+        List<char[]> words = new ArrayList<>();
+        SortedSet<Character> alphabet = new TreeSet<>();
+        for (String term : terms) {
+            if (term == null || term.isEmpty()) continue;
+            char[] chars = term.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = Character.toLowerCase(chars[i]);
+                alphabet.add(chars[i]);
+            }
+            words.add(chars);
+        }
+
+        int[] directClass = new int[DIRECT_CLASSES];
+        StringBuilder other = new StringBuilder();
+        int classes = 1;
+        for (char c : alphabet) {
+            if (c < DIRECT_CLASSES) {
+                directClass[c] = classes++;
+            } else {
+                other.append(c);
+                classes++;
+            }
+        }
+        char[] otherChars = other.toString().toCharArray();
+        int firstOtherClass = classes - otherChars.length;
+
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> depth = new ArrayList<>();
+        trie.add(new int[classes]);
+        depth.add(0);
+        boolean[] terminal = new boolean[words.stream().mapToInt(w -> w.length).sum() + 1];
+        for (char[] word : words) {
+            int node = 0;
+            for (char c : word) {
+                int cls = c < DIRECT_CLASSES ? directClass[c] : firstOtherClass + Arrays.binarySearch(otherChars, c);
+                if (trie.get(node)[cls] == 0) {
+                    trie.get(node)[cls] = trie.size();
+                    trie.add(new int[classes]);
+                    depth.add(depth.get(node) + 1);
+                }
+                node = trie.get(node)[cls];
+            }
+            terminal[node] = true;
+        }
+
+        int nodes = trie.size();
+        int[] next = new int[nodes * classes];
+        int[] fail = new int[nodes];
+        int[][] lengths = new int[nodes][];
+        lengths[0] = NO_MATCHES;
+        int[] queue = new int[nodes];
+        int head = 0;
+        int tail = 0;
+        for (int cls = 1; cls < classes; cls++) {
+            int child = trie.get(0)[cls];
+            if (child != 0) {
+                next[cls] = child;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            int[] inherited = lengths[fail[node]];
+            if (terminal[node]) {
+                lengths[node] = new int[inherited.length + 1];
+                lengths[node][0] = depth.get(node);
+                System.arraycopy(inherited, 0, lengths[node], 1, inherited.length);
+            } else {
+                lengths[node] = inherited;
+            }
+            for (int cls = 1; cls < classes; cls++) {
+                int child = trie.get(node)[cls];
+                if (child != 0) {
+                    fail[child] = next[fail[node] * classes + cls];
+                    next[node * classes + cls] = child;
+                    queue[tail++] = child;
+                } else {
+                    next[node * classes + cls] = next[fail[node] * classes + cls];
+                }
+            }
+        }
+        return new TermMatcher(directClass, otherChars, classes, next, lengths);
+    }
+
+    public boolean isEmpty() {
+        return classes == 1;
+    }
+
+    /**
+     * Matches in {@code text} as start and end offsets: {@code [start0, end0, start1, end1, ...]}, ordered
+     * and not overlapping.
+     */
+    public int[] find(CharSequence text) {
+        if (isEmpty()) return NO_MATCHES;
+        long[] candidates = new long[16];
+        int count = 0;
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = next[state * classes + classOf(Character.toLowerCase(text.charAt(i)))];
+            int[] ending = lengths[state];
+            if (ending.length == 0 || !isBoundary(text, i + 1)) continue;
+            for (int termLength : ending) {
+                int start = i + 1 - termLength;
+                if (!isBoundary(text, start)) continue;
+                if (count == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, count * 2);
+                }
+                candidates[count++] = (long) start << 32 | (Integer.MAX_VALUE - termLength);
+            }
+        }
+        if (count == 0) return NO_MATCHES;
+
+        Arrays.sort(candidates, 0, count);
+        int[] matches = new int[count * 2];
+        int size = 0;
+        int end = 0;
+        for (int i = 0; i < count; i++) {
+            int start = (int) (candidates[i] >>> 32);
+            if (start < end) continue;
+            end = start + Integer.MAX_VALUE - (int) candidates[i];
+            matches[size++] = start;
+            matches[size++] = end;
+        }
+        return size == matches.length ? matches : Arrays.copyOf(matches, size);
+    }
+
+    private int classOf(char c) {
+        if (c < DIRECT_CLASSES) return directClass[c];
+        int index = Arrays.binarySearch(otherChars, c);
+        return index < 0 ? 0 : classes - otherChars.length + index;
+    }
+
+    private static boolean isBoundary(CharSequence text, int at) {
+        boolean before = at > 0 && isWordChar(text.charAt(at - 1));
+        boolean after = at < text.length() && isWordChar(text.charAt(at));
+        return before != after;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
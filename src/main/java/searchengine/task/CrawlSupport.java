@@ -0,0 +1,68 @@
+package searchengine.task;
+
+import searchengine.fetch.FetchResult;
+import searchengine.fetch.PageFetcher;
+import searchengine.repository.PageRepository.PageState;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+final class CrawlSupport {
+
+    private static final Pattern SKIPPED_EXTENSIONS = Pattern.compile(
+            "(?i).+\\.(jpg|jpeg|png|gif|webp|svg|pdf|docx?|xlsx?|pptx?|zip|rar)$");
+
+    private CrawlSupport() {
+    }
+
+    static FetchResult fetch(PageFetcher fetcher, String url, KnownPages known) throws IOException {
+        PageState state = known.get(getPathFromUrl(url));
+        return state == null
+                ? fetcher.fetch(url)
+                : fetcher.fetch(url, state.getEtag(), state.getLastModified());
+    }
+
+    static List<String> collectLinks(List<String> links, String siteOrigin) {
+        List<String> result = new ArrayList<>();
+        for (String absHref : links) {
+            if (isCrawlable(absHref, siteOrigin)) {
+                result.add(absHref);
+            }
+        }
+        return result;
+    }
+
+    static boolean isCrawlable(String absHref, String siteOrigin) {
+        if (absHref.isBlank()) return false;
+        if (absHref.contains("#")) return false;
+        if (SKIPPED_EXTENSIONS.matcher(absHref).matches()) return false;
+
+        URL linkUrl;
+        try {
+            linkUrl = new URL(absHref);
+        } catch (Exception ignored) {
+            return false;
+        }
+        return originNoWww(linkUrl).equals(siteOrigin);
+    }
+
+    static String getPathFromUrl(String fullUrl) {
+        try {
+            return PageWriter.pagePath(new URL(fullUrl));
+        } catch (Exception e) {
+            return "/";
+        }
+    }
+
+    static String originNoWww(URL u) {
+        String host = (u.getHost() == null ? "" : u.getHost()).toLowerCase(Locale.ROOT);
+        if (host.startsWith("www.")) host = host.substring(4);
+        int port = u.getPort();
+        String portPart = (port > 0 && port != u.getDefaultPort()) ? (":" + port) : "";
+        return u.getProtocol().toLowerCase(Locale.ROOT) + "://" + host + portPart + "/";
+    }
+}
@@ -0,0 +1,30 @@
+package searchengine.task;
+
+import searchengine.morphology.PageAnalysis;
+import searchengine.repository.PageRepository.PageState;
+
+final class CrawledPage {
+
+    final String path;
+    final int code;
+    final PageAnalysis analysis;
+    final String html;
+    final String contentHash;
+    final String etag;
+    final String lastModified;
+    final PageState known;
+    final boolean unchanged;
+
+    CrawledPage(String path, int code, PageAnalysis analysis, String html, String contentHash,
+                String etag, String lastModified, PageState known, boolean unchanged) {
+        this.path = path;
+        this.code = code;
+        this.analysis = analysis;
+        this.html = html;
+        this.contentHash = contentHash;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.known = known;
+        this.unchanged = unchanged;
+    }
+}
@@ -0,0 +1,133 @@
+package searchengine.task;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.PipelineSettings;
+import searchengine.fetch.FetchResult;
+import searchengine.fetch.PageFetcher;
+import searchengine.model.Site;
+import searchengine.morphology.SiteLemmaDictionary;
+import searchengine.repository.SiteRepository;
+
+import java.net.MalformedURLException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crawls sites through four stages with their own workers: fetch, parse (HTML to links, unchanged
+ * pages stop here), lemmatize and persist. Links found by the parse stage go back to the fetch stage, whose queue is
+ * therefore left unbounded so that the stages can never wait on each other in a cycle.
+ */
+@Slf4j
+public class IndexingPipeline implements SiteCrawler {
+
+    private final SiteRepository siteRepository;
+    private final PageFetcher fetcher;
+    private final PageWriter pageWriter;
+
+    private final PipelineStage fetchStage;
+    private final PipelineStage parseStage;
+    private final PipelineStage lemmatizeStage;
+    private final PipelineStage persistStage;
+    private final ScheduledExecutorService reporter;
+
+    public IndexingPipeline(PipelineSettings settings,
+                            SiteRepository siteRepository,
+                            PageFetcher fetcher,
+                            PageWriter pageWriter) {
+        this.siteRepository = siteRepository;
+        this.fetcher = fetcher;
+        this.pageWriter = pageWriter;
+        this.fetchStage = new PipelineStage("fetch", settings.getFetch());
+        this.parseStage = new PipelineStage("parse", settings.getParse());
+        this.lemmatizeStage = new PipelineStage("lemmatize", settings.getLemmatize());
+        this.persistStage = new PipelineStage("persist", settings.getPersist());
+
+        this.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pipeline-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int interval = Math.max(1, settings.getReportIntervalSeconds());
+        reporter.scheduleAtFixedRate(() -> log.info("Indexing pipeline queues: {}", getQueueDepths()),
+                interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void crawl(String rootUrl, Site site, UrlFrontier frontier, SiteLemmaDictionary dictionary,
+                      KnownPages known, Runnable onComplete) throws MalformedURLException {
+        SiteCrawl crawl = new SiteCrawl(site, frontier, dictionary, known, siteRepository, onComplete);
+        crawl.hold();
+        enqueue(crawl, rootUrl);
+        crawl.done();
+    }
+
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (PipelineStage stage : List.of(fetchStage, parseStage, lemmatizeStage, persistStage)) {
+            depths.put(stage.getName(), stage.getQueueDepth());
+        }
+        return depths;
+    }
+
+    @Override
+    public void shutdownNow() {
+        reporter.shutdownNow();
+        fetchStage.shutdownNow();
+        parseStage.shutdownNow();
+        lemmatizeStage.shutdownNow();
+        persistStage.shutdownNow();
+    }
+
+    private void enqueue(SiteCrawl crawl, String url) {
+        if (!crawl.admit(url)) return;
+        submit(fetchStage, crawl, () -> fetch(crawl, url));
+    }
+
+    private void fetch(SiteCrawl crawl, String url) throws Exception {
+        FetchResult result = CrawlSupport.fetch(fetcher, url, crawl.known);
+        submit(parseStage, crawl, () -> parse(crawl, url, result));
+    }
+
+    private void parse(SiteCrawl crawl, String url, FetchResult result) throws Exception {
+        CrawledPage page = pageWriter.read(crawl.site, url, result, crawl.known);
+        if (page == null) {
+            crawl.done();
+            return;
+        }
+        for (String link : CrawlSupport.collectLinks(page.analysis.getLinks(), crawl.siteOrigin)) {
+            enqueue(crawl, link);
+        }
+        if (page.unchanged) {
+            crawl.done();
+            return;
+        }
+        submit(lemmatizeStage, crawl, () -> lemmatize(crawl, page));
+    }
+
+    private void lemmatize(SiteCrawl crawl, CrawledPage page) {
+        Map<String, int[]> lemmas = pageWriter.lemmatize(page);
+        submit(persistStage, crawl, () -> persist(crawl, page, lemmas));
+    }
+
+    private void persist(SiteCrawl crawl, CrawledPage page, Map<String, int[]> lemmas) {
+        pageWriter.write(crawl.site, page, lemmas, crawl.dictionary);
+        crawl.done();
+    }
+
+    private void submit(PipelineStage stage, SiteCrawl crawl, Step step) {
+        stage.submit(() -> {
+            try {
+                step.run();
+            } catch (Exception e) {
+                crawl.fail(e);
+                crawl.done();
+            }
+        });
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+}
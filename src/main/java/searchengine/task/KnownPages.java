@@ -0,0 +1,51 @@
+package searchengine.task;
+
+import searchengine.repository.PageRepository.PageState;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pages a site already had before an incremental crawl, by path with query string. The crawl marks every
+ * page it reaches, pages left unmarked were not reachable any more.
+ */
+public class KnownPages {
+
+    private final List<PageState> pages;
+    private final Map<String, PageState> byPath;
+    private final Set<Integer> seen = ConcurrentHashMap.newKeySet();
+
+    public KnownPages(List<PageState> pages) {
+        this.pages = pages;
+        this.byPath = new HashMap<>(pages.size() * 2);
+        for (PageState page : pages) {
+            byPath.put(page.getPath(), page);
+        }
+    }
+
+    public static KnownPages none() {
+        return new KnownPages(List.of());
+    }
+
+    public PageState get(String path) {
+        return byPath.get(path);
+    }
+
+    public void markSeen(PageState page) {
+        seen.add(page.getId());
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    public List<Integer> getUnseenIds() {
+        List<Integer> unseen = new ArrayList<>();
+        for (PageState page : pages) {
+            if (!seen.contains(page.getId())) {
+                unseen.add(page.getId());
+            }
+        }
+        return unseen;
+    }
+}
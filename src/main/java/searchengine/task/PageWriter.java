@@ -0,0 +1,173 @@
+package searchengine.task;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Component;
+import searchengine.fetch.FetchResult;
+import searchengine.index.InvertedIndex;
+import searchengine.index.SiteRegistry;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.morphology.LemmaProcessor;
+import searchengine.morphology.PageAnalysis;
+import searchengine.morphology.PageAnalyzer;
+import searchengine.morphology.SiteLemmaDictionary;
+import searchengine.repository.IndexBatchWriter;
+import searchengine.repository.PageContentStore;
+import searchengine.repository.PageRepository;
+import searchengine.repository.PageRepository.PageState;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns fetched pages into page and index rows, shared by all crawlers. A page that a site already had
+ * is rewritten only when its content hash changed, and then only the lemma frequency differences between
+ * its old and new index are applied, and one that answered 304 is followed through the links stored with
+ * it, without reading or parsing its HTML. The parse, lemmatize and persist steps are timed as
+ * {@code crawler.stage}, and pages are counted per site and outcome in {@code crawler.pages}.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageWriter {
+
+    private final PageRepository pageRepository;
+    private final PageContentStore pageContentStore;
+    private final IndexBatchWriter indexBatchWriter;
+    private final LemmaProcessor lemmaProcessor;
+    private final InvertedIndex invertedIndex;
+    private final SiteRegistry siteRegistry;
+    private final MeterRegistry meterRegistry;
+
+    public int removeUnseen(Site site, KnownPages known) {
+        List<Integer> unseen = known.getUnseenIds();
+        if (!unseen.isEmpty()) {
+            indexBatchWriter.deletePages(unseen);
+            invertedIndex.removePages(site.getId(), unseen);
+            siteRegistry.addPages(site.getId(), -unseen.size());
+        }
+        return unseen.size();
+    }
+
+    public void removeUnusedLemmas(Site site) {
+        siteRegistry.addLemmas(site.getId(), -indexBatchWriter.deleteUnusedLemmas(site.getId()));
+        invertedIndex.removeEmptyLists(site.getId());
+    }
+
+    /**
+     * Stored path of a page: the URL path with its query string, so that {@code /a?x=1} and {@code /a?x=2}
+     * are different pages.
+     */
+    public static String pagePath(URL url) {
+        String path = (url.getPath() == null || url.getPath().isBlank()) ? "/" : url.getPath();
+        if (!path.startsWith("/")) path = "/" + path;
+        String query = url.getQuery();
+        if (query != null && !query.isEmpty()) path = path + "?" + query;
+        if (path.length() > 512) path = path.substring(0, 512);
+        return path;
+    }
+
+    public static String contentHash(String html) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(html.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    CrawledPage read(Site site, String url, FetchResult result, KnownPages known) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return parse(site, url, result, known);
+        } finally {
+            sample.stop(stageTimer("parse"));
+        }
+    }
+
+    private CrawledPage parse(Site site, String url, FetchResult result, KnownPages known) throws IOException {
+        String path = CrawlSupport.getPathFromUrl(url);
+        PageState state = known.get(path);
+        if (state != null && result.isNotModified()) {
+            known.markSeen(state);
+            countPage(site, "not_modified");
+            PageAnalysis analysis = new PageAnalysis("", "", pageContentStore.findLinks(state.getId()), null);
+            return new CrawledPage(path, result.getStatusCode(), analysis, null, state.getContentHash(),
+                    state.getEtag(), state.getLastModified(), state, true);
+        }
+        if (!result.isHtml()) {
+            return null;
+        }
+
+        Document doc = result.parse();
+        String html = doc.html();
+        String hash = contentHash(html);
+        if (state != null) {
+            known.markSeen(state);
+        }
+        boolean unchanged = state != null && hash.equals(state.getContentHash());
+        if (unchanged) {
+            countPage(site, "unchanged");
+        }
+        return new CrawledPage(path, result.getStatusCode(), PageAnalyzer.analyze(doc), html, hash, result.getEtag(),
+                result.getLastModified(), state, unchanged);
+    }
+
+    private void countPage(Site site, String result) {
+        Counter.builder("crawler.pages")
+                .tag("site", site.getUrl())
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("crawler.stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    Map<String, int[]> lemmatize(CrawledPage page) {
+        if (page.code != 200) return Map.of();
+        return stageTimer("lemmatize").record(() -> lemmaProcessor.lemmaPositions(page.analysis.getWords()));
+    }
+
+    void write(Site site, CrawledPage crawled, Map<String, int[]> lemmas, SiteLemmaDictionary dictionary) {
+        stageTimer("persist").record(() -> save(site, crawled, lemmas, dictionary));
+        countPage(site, crawled.known == null ? "new" : "updated");
+    }
+
+    private void save(Site site, CrawledPage crawled, Map<String, int[]> lemmas, SiteLemmaDictionary dictionary) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(crawled.path);
+        page.setCode(crawled.code);
+        page.setTitle(crawled.analysis.getTitle());
+        page.setContentHash(crawled.contentHash);
+        page.setEtag(crawled.etag);
+        page.setLastModified(crawled.lastModified);
+
+        if (crawled.known == null) {
+            Page savedPage = pageRepository.save(page);
+            pageContentStore.save(savedPage.getId(), crawled.html, crawled.analysis.getText(),
+                    crawled.analysis.getLinks());
+            siteRegistry.addPages(site.getId(), 1);
+            lemmaProcessor.saveLemmas(lemmas, savedPage, dictionary);
+        } else {
+            page.setId(crawled.known.getId());
+            indexBatchWriter.updatePage(page);
+            pageContentStore.save(page.getId(), crawled.html, crawled.analysis.getText(),
+                    crawled.analysis.getLinks());
+            lemmaProcessor.replaceLemmas(lemmas, page, dictionary);
+        }
+    }
+}
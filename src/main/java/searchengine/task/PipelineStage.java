@@ -0,0 +1,67 @@
+package searchengine.task;
+
+import searchengine.config.StageSettings;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size worker pool of one pipeline stage. A bounded queue blocks the submitting stage when it is full,
+ * a queue capacity of zero or less makes the queue unbounded.
+ */
+class PipelineStage {
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+
+    PipelineStage(String name, StageSettings settings) {
+        this.name = name;
+        int threads = Math.max(1, settings.getThreads());
+        BlockingQueue<Runnable> queue = settings.getQueueCapacity() > 0
+                ? new ArrayBlockingQueue<>(settings.getQueueCapacity())
+                : new LinkedBlockingQueue<>();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue,
+                threadFactory(name), PipelineStage::waitForQueue);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void submit(Runnable task) {
+        executor.execute(task);
+    }
+
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    private static void waitForQueue(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Stage is stopped");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for stage queue", e);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "pipeline-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.task;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.morphology.SiteLemmaDictionary;
+import searchengine.repository.SiteRepository;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State of one site within an asynchronous crawl. Every admitted URL holds the crawl open until
+ * {@link #done()} is called for it, the last one runs the completion callback.
+ */
+@Slf4j
+class SiteCrawl {
+
+    final Site site;
+    final UrlFrontier frontier;
+    final SiteLemmaDictionary dictionary;
+    final KnownPages known;
+    final String siteOrigin;
+
+    private final SiteRepository siteRepository;
+    private final Runnable onComplete;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    SiteCrawl(Site site, UrlFrontier frontier, SiteLemmaDictionary dictionary, KnownPages known,
+              SiteRepository siteRepository, Runnable onComplete) throws MalformedURLException {
+        this.site = site;
+        this.frontier = frontier;
+        this.dictionary = dictionary;
+        this.known = known;
+        this.siteOrigin = CrawlSupport.originNoWww(new URL(site.getUrl()));
+        this.siteRepository = siteRepository;
+        this.onComplete = onComplete;
+    }
+
+    boolean admit(String url) {
+        if (!frontier.add(url)) return false;
+        pending.incrementAndGet();
+        return true;
+    }
+
+    void hold() {
+        pending.incrementAndGet();
+    }
+
+    void done() {
+        if (pending.decrementAndGet() == 0) {
+            try {
+                onComplete.run();
+            } catch (RuntimeException e) {
+                log.warn("Failed to complete crawl of {}", site.getUrl(), e);
+            }
+        }
+    }
+
+    void fail(Exception e) {
+        synchronized (site) {
+            site.setStatus(Status.FAILED);
+            site.setLastError(e.getClass().getSimpleName() + ": " + (e.getMessage() == null ? "" :
+                    e.getMessage()));
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.task;
+
+import searchengine.model.Site;
+import searchengine.morphology.SiteLemmaDictionary;
+
+import java.net.MalformedURLException;
+
+public interface SiteCrawler {
+
+    void crawl(String rootUrl, Site site, UrlFrontier frontier, SiteLemmaDictionary dictionary,
+               KnownPages known, Runnable onComplete) throws MalformedURLException;
+
+    void shutdownNow();
+}
@@ -0,0 +1,134 @@
+package searchengine.task;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Visited set of one site crawl. URLs are normalized and kept as 64-bit fingerprints in lock-striped
+ * open-addressing tables, so an entry costs 8-16 bytes whatever the URL length, and the number of
+ * entries never exceeds {@code maxUrls}: a new URL reserves its slot in the shared count before it is
+ * inserted and hands it back when the count is already full, so adds on different segments cannot
+ * overshoot the cap.
+ */
+public class UrlFrontier {
+
+    private static final int SEGMENTS = 64;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int maxUrls;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder overflow = new LongAdder();
+
+    public UrlFrontier(int maxUrls) {
+        this.maxUrls = maxUrls;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public boolean add(String url) {
+        String normalized = normalize(url);
+        if (normalized == null) return false;
+
+        long fingerprint = fingerprint(normalized);
+        Segment segment = segments[(int) (fingerprint >>> 58)];
+        synchronized (segment) {
+            if (segment.contains(fingerprint)) {
+                duplicates.increment();
+                return false;
+            }
+            if (size.incrementAndGet() > maxUrls) {
+                size.decrementAndGet();
+                overflow.increment();
+                return false;
+            }
+            segment.insert(fingerprint);
+            return true;
+        }
+    }
+
+    public int size() {
+        return Math.min(size.get(), maxUrls);
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getOverflow() {
+        return overflow.sum();
+    }
+
+    static String normalize(String url) {
+        URL u;
+        try {
+            u = new URL(url.trim());
+        } catch (Exception e) {
+            return null;
+        }
+        String host = u.getHost() == null ? "" : u.getHost().toLowerCase(Locale.ROOT);
+        if (host.startsWith("www.")) host = host.substring(4);
+        int port = u.getPort();
+        String portPart = (port > 0 && port != u.getDefaultPort()) ? (":" + port) : "";
+        String path = (u.getPath() == null || u.getPath().isEmpty()) ? "/" : u.getPath();
+        String query = u.getQuery() == null ? "" : "?" + u.getQuery();
+        return u.getProtocol().toLowerCase(Locale.ROOT) + "://" + host + portPart + path + query;
+    }
+
+    private static long fingerprint(String normalized) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : normalized.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static final class Segment {
+        private long[] table = new long[INITIAL_SEGMENT_CAPACITY];
+        private int count;
+
+        private boolean contains(long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = (int) fingerprint & mask; table[i] != 0; i = (i + 1) & mask) {
+                if (table[i] == fingerprint) return true;
+            }
+            return false;
+        }
+
+        private void insert(long fingerprint) {
+            if ((count + 1) * 2 > table.length) {
+                resize();
+            }
+            place(table, fingerprint);
+            count++;
+        }
+
+        private void resize() {
+            long[] bigger = new long[table.length * 2];
+            for (long fingerprint : table) {
+                if (fingerprint != 0) place(bigger, fingerprint);
+            }
+            table = bigger;
+        }
+
+        private static void place(long[] target, long fingerprint) {
+            int mask = target.length - 1;
+            int i = (int) fingerprint & mask;
+            while (target[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            target[i] = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package searchengine.task;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.fetch.FetchResult;
+import searchengine.fetch.PageFetcher;
+import searchengine.model.Site;
+import searchengine.morphology.SiteLemmaDictionary;
+import searchengine.repository.SiteRepository;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes every crawled URL on its own thread, so blocking fetches do not occupy a ForkJoin worker.
+ * Concurrent fetches are capped per site and across all sites with semaphores. On runtimes with
+ * virtual threads (Java 21+) each URL gets a virtual thread; otherwise URLs run on a pool of
+ * small-stack platform threads sized to the global cap.
+ */
+@Slf4j
+public class VirtualThreadCrawler implements SiteCrawler {
+
+    private static final long PLATFORM_THREAD_STACK_SIZE = 256 * 1024;
+
+    private final SiteRepository siteRepository;
+    private final PageFetcher fetcher;
+    private final PageWriter pageWriter;
+    private final ExecutorService executor;
+    private final Semaphore globalPermits;
+    private final int perSiteLimit;
+
+    public VirtualThreadCrawler(int maxConcurrentFetches,
+                                int maxConcurrentFetchesPerSite,
+                                SiteRepository siteRepository,
+                                PageFetcher fetcher,
+                                PageWriter pageWriter) {
+        this.siteRepository = siteRepository;
+        this.fetcher = fetcher;
+        this.pageWriter = pageWriter;
+        this.globalPermits = new Semaphore(Math.max(1, maxConcurrentFetches));
+        this.perSiteLimit = Math.max(1, maxConcurrentFetchesPerSite);
+        this.executor = newExecutor(Math.max(1, maxConcurrentFetches));
+    }
+
+    @Override
+    public void crawl(String rootUrl, Site site, UrlFrontier frontier, SiteLemmaDictionary dictionary,
+                      KnownPages known, Runnable onComplete) throws MalformedURLException {
+        SiteCrawl crawl = new SiteCrawl(site, frontier, dictionary, known, siteRepository, onComplete);
+        Semaphore sitePermits = new Semaphore(perSiteLimit);
+        crawl.hold();
+        submit(crawl, sitePermits, rootUrl);
+        crawl.done();
+    }
+
+    @Override
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    private void submit(SiteCrawl crawl, Semaphore sitePermits, String url) {
+        if (!crawl.admit(url)) return;
+        try {
+            executor.execute(() -> process(crawl, sitePermits, url));
+        } catch (RejectedExecutionException e) {
+            crawl.done();
+        }
+    }
+
+    private void process(SiteCrawl crawl, Semaphore sitePermits, String url) {
+        try {
+            CrawledPage page = pageWriter.read(crawl.site, url, fetch(crawl, sitePermits, url), crawl.known);
+            if (page == null) return;
+            if (!page.unchanged) {
+                pageWriter.write(crawl.site, page, pageWriter.lemmatize(page), crawl.dictionary);
+            }
+
+            for (String link : CrawlSupport.collectLinks(page.analysis.getLinks(), crawl.siteOrigin)) {
+                submit(crawl, sitePermits, link);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            crawl.fail(e);
+        } finally {
+            crawl.done();
+        }
+    }
+
+    private FetchResult fetch(SiteCrawl crawl, Semaphore sitePermits, String url) throws Exception {
+        sitePermits.acquire();
+        try {
+            globalPermits.acquire();
+            try {
+                return CrawlSupport.fetch(fetcher, url, crawl.known);
+            } finally {
+                globalPermits.release();
+            }
+        } finally {
+            sitePermits.release();
+        }
+    }
+
+    private static ExecutorService newExecutor(int platformThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.info("Virtual threads are not available, crawling on {} platform threads", platformThreads);
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread thread = new Thread(null, r, "crawler-" + counter.incrementAndGet(),
+                        PLATFORM_THREAD_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            };
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(platformThreads, platformThreads,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
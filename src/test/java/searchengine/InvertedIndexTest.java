@@ -0,0 +1,205 @@
+package searchengine;
+
+import org.junit.jupiter.api.Test;
+import searchengine.index.InvertedIndex;
+import searchengine.index.Positions;
+import searchengine.index.PostingList;
+import searchengine.index.SearchHits;
+import searchengine.index.SiteRanker;
+import searchengine.index.TopK;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvertedIndexTest {
+
+    @Test
+    void intersectsPostingListsOfOneSite() {
+        InvertedIndex index = new InvertedIndex(null, true);
+        for (int page = 1; page <= 1000; page++) {
+            Map<String, Integer> lemmaIds = new HashMap<>();
+            Map<Integer, Float> ranks = new HashMap<>();
+            lemmaIds.put("кот", 1);
+            ranks.put(1, 1f);
+            if (page % 100 == 0) {
+                lemmaIds.put("пёс", 2);
+                ranks.put(2, 2f);
+            }
+            index.addPage(1, page, lemmaIds, ranks);
+        }
+
+        TopK top = new TopK(100);
+        int matched = InvertedIndex.collect(snapshots(index.find(List.of("кот", "пёс"), 1).get(1)), top, true);
+        SearchHits hits = top.drain();
+
+        assertThat(matched).isEqualTo(10);
+        assertThat(hits.getSize()).isEqualTo(10);
+        assertThat(hits.getPageIds()[0]).isEqualTo(100);
+        assertThat(hits.getPageIds()[9]).isEqualTo(1000);
+        assertThat(hits.getScores()[0]).isEqualTo(3f);
+        assertThat(index.documentCount(1)).isEqualTo(1000);
+    }
+
+    @Test
+    void prunedTopKMatchesFullRanking() {
+        Random random = new Random(42);
+        List<PostingList.Postings> lists = new ArrayList<>();
+        Map<Integer, Float> scores = new HashMap<>();
+        Map<Integer, Integer> hits = new HashMap<>();
+        for (int l = 0; l < 3; l++) {
+            int[] pages = new int[5000];
+            float[] ranks = new float[5000];
+            int size = 0;
+            for (int page = 1; page <= 20000; page++) {
+                if (random.nextInt(4) == 0 && size < pages.length) {
+                    pages[size] = page;
+                    ranks[size] = 1 + random.nextInt(l == 0 ? 50 : 5);
+                    scores.merge(page, ranks[size], Float::sum);
+                    hits.merge(page, 1, Integer::sum);
+                    size++;
+                }
+            }
+            lists.add(PostingList.Postings.of(pages, ranks, size));
+        }
+        List<Integer> expected = hits.entrySet().stream()
+                .filter(e -> e.getValue() == 3)
+                .map(Map.Entry::getKey)
+                .sorted(Comparator.<Integer, Float>comparing(scores::get).reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .limit(20)
+                .collect(Collectors.toList());
+
+        TopK exact = new TopK(20);
+        int matched = InvertedIndex.collect(lists, exact, true);
+        TopK pruned = new TopK(20);
+        int counted = InvertedIndex.collect(lists, pruned, false);
+
+        assertThat(matched).isEqualTo((int) hits.values().stream().filter(c -> c == 3).count());
+        assertThat(pages(exact.drain())).isEqualTo(expected);
+        assertThat(pages(pruned.drain())).isEqualTo(expected);
+        assertThat(pruned.isPruned()).isTrue();
+        assertThat(counted).isLessThan(matched);
+    }
+
+    @Test
+    void keepsPageIdsSortedAfterOutOfOrderAddsAndRemovals() {
+        InvertedIndex index = new InvertedIndex(null, true);
+        for (int page : new int[]{5, 3, 9, 1, 7}) {
+            index.addPage(2, page, Map.of("кот", 10), Map.of(10, (float) page));
+        }
+        index.removePage(2, 3, List.of(10));
+        index.removePages(2, List.of(9, 42));
+
+        PostingList.Postings postings = index.find(List.of("кот"), null).get(2).get(0).snapshot();
+
+        assertThat(pages(postings)).containsExactly(1, 5, 7);
+        assertThat(postings.rankAt(1)).isEqualTo(5f);
+        assertThat(postings.advance(0, 6)).isEqualTo(2);
+        assertThat(index.documentCount(2)).isEqualTo(3);
+
+        index.removeSite(2);
+        assertThat(index.find(List.of("кот"), null)).isEmpty();
+    }
+
+    @Test
+    void keepsWordPositionsWithTheirPages() {
+        InvertedIndex index = new InvertedIndex(null, true);
+        for (int page : new int[]{5, 3, 9, 1, 7, 5}) {
+            index.addPage(2, page, Map.of("кот", 10, "пёс", 11), Map.of(10, 1f, 11, 1f),
+                    Map.of(10, Positions.encode(new int[]{page, page * 10}), 11, Positions.encode(new int[]{page + 1})));
+        }
+        index.removePage(2, 3, List.of(10, 11));
+        index.removePages(2, List.of(9));
+
+        Map<Integer, Map<String, int[]>> positions = index.positions(List.of(1, 3, 5, 7, 9, 42),
+                Map.of(10, "кот", 11, "пёс", 12, "ёж"));
+
+        assertThat(positions).containsOnlyKeys(1, 5, 7);
+        assertThat(positions.get(5).get("кот")).containsExactly(5, 50);
+        assertThat(positions.get(7).get("кот")).containsExactly(7, 70);
+        assertThat(positions.get(1).get("пёс")).containsExactly(2);
+        assertThat(positions.get(7)).containsOnlyKeys("кот", "пёс");
+    }
+
+    @Test
+    void mergesPerSiteRankingsIntoOneOrder() {
+        Random random = new Random(3);
+        Map<Integer, List<PostingList.Postings>> bySite = new HashMap<>();
+        for (int site = 1; site <= 6; site++) {
+            int[] pages = new int[500];
+            float[] ranks = new float[500];
+            for (int i = 0; i < pages.length; i++) {
+                pages[i] = site * 1000 + i;
+                ranks[i] = 1 + random.nextInt(100);
+            }
+            bySite.put(site, List.of(PostingList.Postings.of(pages, ranks, pages.length)));
+        }
+        TopK expected = new TopK(25);
+        int expectedCount = 0;
+        for (List<PostingList.Postings> lists : bySite.values()) {
+            expectedCount += InvertedIndex.collect(lists, expected, true);
+        }
+
+        SiteRanker ranker = new SiteRanker(3, 10_000);
+        SiteRanker.Ranking ranking = ranker.rank(bySite, 25, true);
+        ranker.shutdown();
+
+        assertThat(ranking.getCount()).isEqualTo(expectedCount);
+        assertThat(ranking.isApproximate()).isFalse();
+        assertThat(ranking.isTimedOut()).isFalse();
+        assertThat(pages(ranking.getHits())).isEqualTo(pages(expected.drain()));
+    }
+
+    @Test
+    void leavesOutSitesThatMissTheDeadline() {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Map<Integer, List<PostingList.Postings>> bySite = new LinkedHashMap<>();
+        bySite.put(1, List.of(PostingList.Postings.of(new int[]{11, 12}, new float[]{5, 4}, 2)));
+        bySite.put(2, List.of(PostingList.Postings.of(new int[]{21}, new float[]{1}, 1)));
+
+        SiteRanker ranker = new SiteRanker(pool, 50);
+        SiteRanker.Ranking ranking = ranker.rank(bySite, 10, true);
+        release.countDown();
+        ranker.shutdown();
+
+        assertThat(ranking.isTimedOut()).isTrue();
+        assertThat(ranking.isApproximate()).isTrue();
+        assertThat(ranking.getCount()).isEqualTo(1);
+        assertThat(pages(ranking.getHits())).containsExactly(21);
+    }
+
+    private static List<PostingList.Postings> snapshots(List<PostingList> lists) {
+        return lists.stream().map(PostingList::snapshot).collect(Collectors.toList());
+    }
+
+    private static List<Integer> pages(SearchHits hits) {
+        List<Integer> pages = new ArrayList<>();
+        for (int i = 0; i < hits.getSize(); i++) {
+            pages.add(hits.getPageIds()[i]);
+        }
+        return pages;
+    }
+
+    private static List<Integer> pages(PostingList.Postings postings) {
+        List<Integer> pages = new ArrayList<>();
+        for (int i = 0; i < postings.size(); i++) {
+            pages.add(postings.pageAt(i));
+        }
+        return pages;
+    }
+}
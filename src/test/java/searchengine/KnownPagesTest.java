@@ -0,0 +1,140 @@
+package searchengine;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.AppConfig;
+import searchengine.fetch.PageFetcher;
+import searchengine.index.InvertedIndex;
+import searchengine.index.SiteRegistry;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.morphology.LemmaProcessor;
+import searchengine.morphology.SiteLemmaDictionary;
+import searchengine.repository.IndexBatchWriter;
+import searchengine.repository.PageContentStore;
+import searchengine.repository.PageRepository;
+import searchengine.repository.PageRepository.PageState;
+import searchengine.repository.SiteRepository;
+import searchengine.task.KnownPages;
+import searchengine.task.PageWriter;
+import searchengine.task.SiteIndexerTask;
+import searchengine.task.UrlFrontier;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class KnownPagesTest {
+
+    private static final String ROOT_HTML = "<html><head><title>Главная</title></head><body>" +
+            "<a href=\"/a?x=1\">1</a><a href=\"/a?x=2\">2</a></body></html>";
+
+    private final Map<String, String> validators = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private String rootUrl;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        Map<String, String> etags = Map.of("/", "\"root\"", "/a?x=1", "\"one\"", "/a?x=2", "\"two-new\"");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().toString();
+            String etag = etags.get(path);
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null) validators.put(path, ifNoneMatch);
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = (path.equals("/") ? ROOT_HTML
+                    : "<html><head><title>" + path + "</title></head><body>Страница " + path + "</body></html>")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        rootUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void keepsUnchangedPagesRewritesChangedOnesAndRemovesUnreachableOnes() throws Exception {
+        PageRepository pageRepository = mock(PageRepository.class);
+        PageContentStore pageContentStore = mock(PageContentStore.class);
+        IndexBatchWriter indexBatchWriter = mock(IndexBatchWriter.class);
+        when(indexBatchWriter.insertMissingLemmas(anyInt(), anyCollection())).thenAnswer(invocation -> {
+            Map<String, Integer> ids = new HashMap<>();
+            for (Object lemma : (Collection<?>) invocation.getArgument(1)) {
+                ids.put((String) lemma, ids.size() + 1);
+            }
+            return ids;
+        });
+        InvertedIndex invertedIndex = new InvertedIndex(null, false);
+        PageWriter pageWriter = new PageWriter(pageRepository, pageContentStore, indexBatchWriter,
+                new LemmaProcessor(indexBatchWriter, invertedIndex), invertedIndex, new SiteRegistry(null),
+                new SimpleMeterRegistry());
+
+        KnownPages known = new KnownPages(List.of(
+                state(1, "/", "\"root\""),
+                state(2, "/a?x=1", "\"one\""),
+                state(3, "/a?x=2", "\"two-old\""),
+                state(4, "/gone", "\"gone\"")));
+        Site site = new Site();
+        site.setId(1);
+        site.setUrl(rootUrl);
+        site.setName("test");
+        site.setStatus(Status.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+
+        when(pageContentStore.findLinks(1)).thenReturn(List.of(rootUrl + "a?x=1", rootUrl + "a?x=2"));
+
+        PageFetcher fetcher = new PageFetcher(new AppConfig(), new SimpleMeterRegistry());
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            pool.invoke(new SiteIndexerTask(rootUrl, site, mock(SiteRepository.class), new UrlFrontier(100),
+                    new SiteLemmaDictionary(1, indexBatchWriter, 100), known, fetcher, pageWriter));
+        } finally {
+            pool.shutdownNow();
+            fetcher.close();
+        }
+
+        assertThat(site.getStatus()).isEqualTo(Status.INDEXING);
+        assertThat(validators).containsEntry("/a?x=1", "\"one\"").containsEntry("/a?x=2", "\"two-old\"");
+        verify(pageRepository, never()).save(any(Page.class));
+        verify(indexBatchWriter).updatePage(argThat(page -> page.getId() == 3 && "/a?x=2".equals(page.getPath())));
+        verify(indexBatchWriter, times(1)).updatePage(any());
+        verify(pageContentStore).save(eq(3), anyString(), anyString(), eq(List.of()));
+        verify(pageContentStore, times(1)).save(anyInt(), any(), any(), any());
+
+        assertThat(pageWriter.removeUnseen(site, known)).isEqualTo(1);
+        verify(indexBatchWriter).deletePages(List.of(4));
+    }
+
+    private static PageState state(int id, String path, String etag) {
+        PageState state = mock(PageState.class);
+        when(state.getId()).thenReturn(id);
+        when(state.getPath()).thenReturn(path);
+        when(state.getContentHash()).thenReturn("stored-" + id);
+        when(state.getEtag()).thenReturn(etag);
+        return state;
+    }
+}
@@ -0,0 +1,62 @@
+package searchengine;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+import searchengine.morphology.PageAnalysis;
+import searchengine.morphology.PageAnalyzer;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageAnalyzerTest {
+
+    private static final String[] PIECES = {
+            "<p>", "</p>", "<div>", "</div>", "<br>", "<span>", "</span>", "<b>", "</b>", "<pre>", "</pre>",
+            "<ul><li>", "</li><li>", "</li></ul>", "<h1>", "</h1>", "<table><tr><td>", "</td><td>",
+            "</td></tr></table>", "<a href=\"/x\">", "</a>", "<img src=\"i.png\">", "<!-- комментарий -->",
+            "<script>var x = 1;</script>", "Зебры", "пасутся", "word", "42", ",", " ", "  ", "\n", "\t",
+            "&nbsp;", "&shy;", "\u200b", "\u000b", "&amp;", "<![CDATA[x]]>", "<svg><![CDATA[ a  b ]]></svg>",
+            "<textarea>", "</textarea>"
+    };
+
+    @Test
+    void textMatchesCollapsedElementText() {
+        Random random = new Random(11);
+        for (int round = 0; round < 500; round++) {
+            StringBuilder html = new StringBuilder("<html><head><title>t</title></head><body>");
+            int pieces = random.nextInt(40);
+            for (int i = 0; i < pieces; i++) {
+                html.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            html.append("</body></html>");
+
+            assertThat(PageAnalyzer.analyze(Jsoup.parse(html.toString())).getText())
+                    .as(html.toString())
+                    .isEqualTo(plainText(html.toString()));
+        }
+    }
+
+    @Test
+    void collectsTitleLinksAndBlockBoundaries() {
+        String html = "<html><head><title>\n  Главная   страница </title></head><body>" +
+                "<p>один<br>два</p><div>три</div>четыре<span>пять</span> " +
+                "<a href=\"/a?x=1\">шесть</a> <a href=\"https://other.test/b\">семь</a><a name=\"top\">восемь</a>" +
+                "</body></html>";
+
+        PageAnalysis analysis = PageAnalyzer.analyze(Jsoup.parse(html, "https://site.test/dir/page"));
+
+        assertThat(analysis.getTitle()).isEqualTo("Главная страница");
+        assertThat(analysis.getText()).isEqualTo("Главная страница один два три четырепять шесть семьвосемь");
+        assertThat(analysis.getText()).isEqualTo(plainText(html));
+        assertThat(analysis.getLinks()).containsExactly("https://site.test/a?x=1", "https://other.test/b");
+        assertThat(analysis.getWords().total()).isEqualTo(8);
+    }
+
+    /**
+     * The page text as indexing built it before {@link PageAnalyzer}.
+     */
+    private static String plainText(String html) {
+        return Jsoup.parse(html).text().replaceAll("\\s+", " ").trim();
+    }
+}
@@ -0,0 +1,47 @@
+package searchengine;
+
+import org.junit.jupiter.api.Test;
+import searchengine.index.Positions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PositionsTest {
+
+    @Test
+    void decodesWhatWasEncoded() {
+        Random random = new Random(3);
+        for (int round = 0; round < 200; round++) {
+            TreeSet<Integer> set = new TreeSet<>();
+            int size = random.nextInt(50);
+            while (set.size() < size) {
+                set.add(random.nextInt(round % 2 == 0 ? 300 : Integer.MAX_VALUE));
+            }
+            int[] positions = set.stream().mapToInt(Integer::intValue).toArray();
+
+            assertThat(Positions.decode(Positions.encode(positions))).containsExactly(positions);
+        }
+        assertThat(Positions.encode(new int[]{0, 1, 2, 130, 131})).hasSize(6);
+    }
+
+    @Test
+    void findsPhrasesAndSpans() {
+        Map<String, int[]> page = Map.of(
+                "мастер", new int[]{3, 10},
+                "маргарита", new int[]{5, 12, 40},
+                "москва", new int[]{20});
+
+        assertThat(Positions.containsPhrase(page, Map.of("мастер", new int[]{0}, "маргарита", new int[]{2})))
+                .isTrue();
+        assertThat(Positions.containsPhrase(page, Map.of("маргарита", new int[]{0}, "мастер", new int[]{2})))
+                .isFalse();
+        assertThat(Positions.containsPhrase(page, Map.of("мастер", new int[]{0}, "булгаков", new int[]{1})))
+                .isFalse();
+        assertThat(Positions.minSpan(List.of(page.get("мастер"), page.get("маргарита")))).isEqualTo(2);
+        assertThat(Positions.minSpan(List.of(page.get("мастер"), page.get("москва")))).isEqualTo(10);
+    }
+}
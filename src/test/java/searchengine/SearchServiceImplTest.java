@@ -0,0 +1,294 @@
+package searchengine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResultItem;
+import searchengine.index.IndexGeneration;
+import searchengine.index.InvertedIndex;
+import searchengine.index.Positions;
+import searchengine.index.SiteRanker;
+import searchengine.index.SiteRegistry;
+import searchengine.model.Site;
+import searchengine.morphology.LemmaProcessor;
+import searchengine.repository.IndexBatchWriter;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.LemmaRepository.LemmaRow;
+import searchengine.repository.PageContentStore;
+import searchengine.repository.PageIndexRepository;
+import searchengine.repository.PageIndexRepository.PositionRow;
+import searchengine.repository.PageIndexRepository.RankRow;
+import searchengine.repository.PageRepository;
+import searchengine.repository.PageRepository.PageSummary;
+import searchengine.services.SearchResultCache;
+import searchengine.services.SearchServiceImpl;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SearchServiceImplTest {
+
+    private final LemmaRepository lemmaRepository = mock(LemmaRepository.class);
+    private final PageRepository pageRepository = mock(PageRepository.class);
+    private final PageContentStore pageContentStore = mock(PageContentStore.class);
+    private final PageIndexRepository pageIndexRepository = mock(PageIndexRepository.class);
+    private final SiteRegistry siteRegistry = new SiteRegistry(null);
+    private final SearchResultCache searchResultCache = new SearchResultCache(new IndexGeneration(), true, 100, 300);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void releaseStalledPool() {
+        release.countDown();
+    }
+
+    @Test
+    void responseMissingATimedOutSiteIsNotCached() throws Exception {
+        site(1, 10);
+        site(2, 10);
+        lemmas(lemma(11, 1, "зебра"), lemma(21, 2, "зебра"));
+        ranks(rank(11, 100, 1f), rank(21, 200, 1f));
+        SearchServiceImpl service = service(new SiteRanker(stalledPool(), 50));
+
+        SearchResponse response = service.search("зебра", null, 0, 10);
+
+        assertThat(response.getCount()).isEqualTo(1);
+        assertThat(response.isApproximateCount()).isTrue();
+        assertThat(response.getData()).extracting(SearchResultItem::getUri).containsExactly("/200");
+        assertThat(searchResultCache.getStatistics().getSize()).isZero();
+        assertThat(meterRegistry.get("search.request").tag("outcome", "partial").timer().count()).isEqualTo(1);
+
+        service.search("зебра", null, 0, 10);
+        verify(lemmaRepository, times(2)).findRowsByLemmaIn(anyCollection());
+    }
+
+    @Test
+    void completeResponseIsCached() throws Exception {
+        site(1, 10);
+        site(2, 10);
+        lemmas(lemma(11, 1, "зебра"), lemma(21, 2, "зебра"));
+        ranks(rank(11, 100, 1f), rank(21, 200, 1f));
+        SiteRanker ranker = new SiteRanker(2, 10_000);
+        SearchServiceImpl service = service(ranker);
+
+        SearchResponse response = service.search("зебра", null, 0, 10);
+        service.search("зебра", null, 0, 10);
+        ranker.shutdown();
+
+        assertThat(response.getCount()).isEqualTo(2);
+        assertThat(response.isApproximateCount()).isFalse();
+        assertThat(searchResultCache.getStatistics().getSize()).isEqualTo(1);
+        verify(lemmaRepository, times(1)).findRowsByLemmaIn(anyCollection());
+    }
+
+    @Test
+    void phraseQueriesDoNotShareCacheEntriesWithTheirWords() throws Exception {
+        site(1, 10);
+        lemmas(lemma(11, 1, "мастер"), lemma(12, 1, "маргарита"));
+        ranks(rank(11, 100, 1f), rank(12, 100, 1f));
+        SearchServiceImpl service = service(new SiteRanker(1, 10_000));
+
+        SearchResponse words = service.search("мастер маргарита", null, 0, 10);
+        SearchResponse spaced = service.search("\" мастер маргарита \"", null, 0, 10);
+        service.search("« мастер маргарита »", null, 0, 10);
+        SearchResponse reversed = service.search("« маргарита мастер »", null, 0, 10);
+
+        assertThat(words.getCount()).isEqualTo(1);
+        assertThat(spaced.getCount()).isZero();
+        assertThat(reversed.getCount()).isZero();
+        assertThat(searchResultCache.getStatistics().getSize()).isEqualTo(3);
+        assertThat(searchResultCache.getStatistics().getHits()).isEqualTo(1);
+        verify(lemmaRepository, times(3)).findRowsByLemmaIn(anyCollection());
+    }
+
+    @Test
+    void proximityRaisesOnlyTheWindowAndKeepsTheRestInOrder() throws Exception {
+        site(1, 10);
+        lemmas(lemma(11, 1, "кошка"), lemma(12, 1, "собака"));
+        ranks(rank(11, 101, 4f), rank(11, 102, 3f), rank(11, 103, 2f), rank(11, 104, 1f),
+                rank(12, 101, 4f), rank(12, 102, 3f), rank(12, 103, 2f), rank(12, 104, 1f));
+        positions(position(101, 11, 0), position(101, 12, 50), position(102, 11, 3), position(102, 12, 4),
+                position(103, 11, 7), position(103, 12, 8));
+        SearchServiceImpl service = service(new SiteRanker(1, 10_000));
+        ReflectionTestUtils.setField(service, "proximityWindow", 2);
+
+        SearchResponse response = service.search("кошка собака", null, 0, 10);
+
+        assertThat(response.getCount()).isEqualTo(4);
+        assertThat(response.isApproximateCount()).isFalse();
+        assertThat(response.getData()).extracting(SearchResultItem::getUri)
+                .containsExactly("/102", "/101", "/103", "/104");
+        verify(pageIndexRepository).findPositions(eq(List.of(101, 102)), anyCollection());
+    }
+
+    @Test
+    void proximityReadsPositionsFromTheInMemoryIndex() throws Exception {
+        site(1, 10);
+        InvertedIndex index = readyIndex();
+        index.addPage(1, 101, Map.of("кошка", 11, "собака", 12), Map.of(11, 2f, 12, 2f),
+                Map.of(11, Positions.encode(new int[]{0}), 12, Positions.encode(new int[]{40})));
+        index.addPage(1, 102, Map.of("кошка", 11, "собака", 12), Map.of(11, 1.8f, 12, 1.8f),
+                Map.of(11, Positions.encode(new int[]{3}), 12, Positions.encode(new int[]{4})));
+        SearchServiceImpl service = service(new SiteRanker(1, 10_000), index);
+
+        SearchResponse response = service.search("кошка собака", null, 0, 10);
+
+        assertThat(response.getCount()).isEqualTo(2);
+        assertThat(response.getData()).extracting(SearchResultItem::getUri).containsExactly("/102", "/101");
+        verifyNoInteractions(lemmaRepository, pageIndexRepository);
+    }
+
+    @Test
+    void phraseQueryCountsOnlyPagesHoldingThePhrase() throws Exception {
+        site(1, 10);
+        lemmas(lemma(11, 1, "кошка"), lemma(12, 1, "собака"));
+        ranks(rank(11, 101, 3f), rank(11, 102, 2f), rank(11, 103, 1f),
+                rank(12, 101, 3f), rank(12, 102, 2f), rank(12, 103, 1f));
+        positions(position(101, 11, 0), position(101, 12, 1), position(102, 11, 1), position(102, 12, 0),
+                position(103, 11, 5), position(103, 12, 6));
+        SearchServiceImpl service = service(new SiteRanker(1, 10_000));
+
+        SearchResponse all = service.search("\"кошка собака\"", null, 0, 10);
+        ReflectionTestUtils.setField(service, "phraseCandidates", 2);
+        SearchResponse truncated = service.search("\"кошка собака\"", null, 0, 1);
+
+        assertThat(all.getCount()).isEqualTo(2);
+        assertThat(all.isApproximateCount()).isFalse();
+        assertThat(all.getData()).extracting(SearchResultItem::getUri).containsExactly("/101", "/103");
+        assertThat(truncated.getCount()).isEqualTo(1);
+        assertThat(truncated.isApproximateCount()).isTrue();
+        assertThat(truncated.getData()).extracting(SearchResultItem::getUri).containsExactly("/101");
+    }
+
+    /**
+     * A pool whose only thread is busy until the test ends and whose queue takes one task: the first site
+     * submitted waits in the queue past any deadline, the next ones run on the calling thread.
+     */
+    private ThreadPoolExecutor stalledPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return pool;
+    }
+
+    private SearchServiceImpl service(SiteRanker ranker) throws Exception {
+        return service(ranker, new InvertedIndex(null, false));
+    }
+
+    private SearchServiceImpl service(SiteRanker ranker, InvertedIndex invertedIndex) throws Exception {
+        LemmaProcessor lemmaProcessor = new LemmaProcessor(mock(IndexBatchWriter.class), invertedIndex);
+        when(pageRepository.findSummariesByIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<PageSummary> summaries = new ArrayList<>();
+            for (Object id : (Collection<?>) invocation.getArgument(0)) {
+                summaries.add(summary((Integer) id));
+            }
+            return summaries;
+        });
+        when(pageContentStore.findTexts(anyCollection())).thenAnswer(invocation -> {
+            Map<Integer, String> texts = new HashMap<>();
+            for (Object id : (Collection<?>) invocation.getArgument(0)) {
+                texts.put((Integer) id, "Зебра пасётся");
+            }
+            return texts;
+        });
+        SearchServiceImpl service = new SearchServiceImpl(lemmaRepository, pageRepository, pageContentStore,
+                pageIndexRepository, siteRegistry, lemmaProcessor, invertedIndex, searchResultCache, ranker,
+                meterRegistry);
+        ReflectionTestUtils.setField(service, "tooCommonPercent", 1.0);
+        ReflectionTestUtils.setField(service, "exactCount", true);
+        ReflectionTestUtils.setField(service, "proximityWeight", 0.5);
+        ReflectionTestUtils.setField(service, "proximityWindow", 100);
+        ReflectionTestUtils.setField(service, "phraseCandidates", 10_000);
+        return service;
+    }
+
+    /**
+     * An enabled in-memory index loaded from an empty database.
+     */
+    private static InvertedIndex readyIndex() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("lo", null);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(bounds);
+        InvertedIndex index = new InvertedIndex(jdbcTemplate, true);
+        index.afterSingletonsInstantiated();
+        assertThat(index.isReady()).isTrue();
+        return index;
+    }
+
+    private void site(int id, int pages) {
+        Site site = new Site();
+        site.setId(id);
+        site.setUrl("http://site" + id + ".test");
+        site.setName("site" + id);
+        siteRegistry.register(site);
+        siteRegistry.addPages(id, pages);
+    }
+
+    private void lemmas(LemmaRow... rows) {
+        when(lemmaRepository.findRowsByLemmaIn(anyCollection())).thenReturn(List.of(rows));
+    }
+
+    private void ranks(RankRow... rows) {
+        when(pageIndexRepository.findRanksByLemmaIds(anyCollection())).thenReturn(List.of(rows));
+    }
+
+    private void positions(PositionRow... rows) {
+        when(pageIndexRepository.findPositions(anyCollection(), anyCollection())).thenAnswer(invocation -> {
+            Collection<?> pageIds = invocation.getArgument(0);
+            return Arrays.stream(rows).filter(row -> pageIds.contains(row.getPageId())).toList();
+        });
+    }
+
+    private static LemmaRow lemma(int id, int siteId, String lemma) {
+        LemmaRow row = mock(LemmaRow.class);
+        when(row.getId()).thenReturn(id);
+        when(row.getSiteId()).thenReturn(siteId);
+        when(row.getLemma()).thenReturn(lemma);
+        when(row.getFrequency()).thenReturn(1);
+        return row;
+    }
+
+    private static RankRow rank(int lemmaId, int pageId, float rank) {
+        RankRow row = mock(RankRow.class);
+        when(row.getLemmaId()).thenReturn(lemmaId);
+        when(row.getPageId()).thenReturn(pageId);
+        when(row.getRank()).thenReturn(rank);
+        return row;
+    }
+
+    private static PositionRow position(int pageId, int lemmaId, int... positions) {
+        PositionRow row = mock(PositionRow.class);
+        when(row.getPageId()).thenReturn(pageId);
+        when(row.getLemmaId()).thenReturn(lemmaId);
+        when(row.getPositions()).thenReturn(Positions.encode(positions));
+        return row;
+    }
+
+    private static PageSummary summary(int id) {
+        PageSummary summary = mock(PageSummary.class);
+        when(summary.getId()).thenReturn(id);
+        when(summary.getSiteId()).thenReturn(id / 100);
+        when(summary.getPath()).thenReturn("/" + id);
+        when(summary.getTitle()).thenReturn("page " + id);
+        return summary;
+    }
+}
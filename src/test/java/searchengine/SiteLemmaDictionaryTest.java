@@ -0,0 +1,30 @@
+package searchengine;
+
+import org.junit.jupiter.api.Test;
+import searchengine.index.IndexGeneration;
+import searchengine.morphology.SiteLemmaDictionary;
+import searchengine.repository.IndexBatchWriter;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SiteLemmaDictionaryTest {
+
+    @Test
+    void advancesTheGenerationOnEveryFlush() {
+        IndexGeneration generation = new IndexGeneration();
+        SiteLemmaDictionary dictionary = new SiteLemmaDictionary(1, mock(IndexBatchWriter.class), 3,
+                added -> {
+                }, generation::advance);
+
+        for (int page = 0; page < 7; page++) {
+            dictionary.countPage(List.of(page));
+        }
+        assertThat(generation.current()).isEqualTo(2);
+
+        dictionary.flush();
+        assertThat(generation.current()).isEqualTo(3);
+    }
+}
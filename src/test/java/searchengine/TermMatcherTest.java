@@ -0,0 +1,65 @@
+package searchengine;
+
+import org.junit.jupiter.api.Test;
+import searchengine.services.SnippetBuilder;
+import searchengine.services.TermMatcher;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TermMatcherTest {
+
+    private static final String[] TERMS = {"кот", "котик", "скот", "cat", "cats", "ёж", "co-op", "ab", "б"};
+    private static final String[] PIECES = {
+            "Кот", "КОТИК", "скот", "котлета", "Cat", "CATS", "cat_", "Ёж", "ежи", "co-op", "Co-Op", "ab",
+            "abc", "б", "42", "x", ",", ".", " ", " ", "\n", "—", "«", "»", "-"
+    };
+
+    @Test
+    void findsTheSameMatchesAsWordBoundaryRegex() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            List<String> terms = new ArrayList<>();
+            for (String term : TERMS) {
+                if (random.nextInt(3) > 0) terms.add(term);
+            }
+            StringBuilder text = new StringBuilder();
+            int pieces = random.nextInt(40);
+            for (int i = 0; i < pieces; i++) {
+                text.append(PIECES[random.nextInt(PIECES.length)]);
+                if (random.nextBoolean()) text.append(' ');
+            }
+
+            assertThat(TermMatcher.of(terms).find(text)).isEqualTo(regexMatches(terms, text.toString()));
+        }
+    }
+
+    @Test
+    void highlightsMatchesInsideSnippetWindows() {
+        String text = "Начало. " + "слово ".repeat(40) + "Кот сидит на окне. " + "слово ".repeat(40) + "КОТ.";
+
+        String snippet = SnippetBuilder.makeSnippet(text, List.of("кот"), "коты");
+
+        assertThat(snippet).contains("<b>Кот</b> сидит").contains("<b>КОТ</b>.").startsWith("...");
+    }
+
+    private static int[] regexMatches(List<String> terms, String text) {
+        if (terms.isEmpty()) return new int[0];
+        String alternation = terms.stream()
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .map(Pattern::quote)
+                .collect(Collectors.joining("|"));
+        Matcher m = Pattern.compile("\\b(" + alternation + ")\\b", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)
+                .matcher(text);
+        List<Integer> offsets = new ArrayList<>();
+        while (m.find()) {
+            offsets.add(m.start());
+            offsets.add(m.end());
+        }
+        return offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
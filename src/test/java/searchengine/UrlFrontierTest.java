@@ -0,0 +1,83 @@
+package searchengine;
+
+import org.junit.jupiter.api.Test;
+import searchengine.task.UrlFrontier;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlFrontierTest {
+
+    @Test
+    void equivalentUrlsAreRejectedAsDuplicates() {
+        UrlFrontier frontier = new UrlFrontier(100);
+
+        assertThat(frontier.add("https://www.example.com")).isTrue();
+        assertThat(frontier.add("HTTPS://Example.com:443/")).isFalse();
+        assertThat(frontier.add("https://example.com/page?id=1")).isTrue();
+        assertThat(frontier.add("https://example.com/page?id=2")).isTrue();
+
+        assertThat(frontier.size()).isEqualTo(3);
+        assertThat(frontier.getDuplicates()).isEqualTo(1);
+    }
+
+    @Test
+    void stopsAcceptingUrlsAtLimit() {
+        UrlFrontier frontier = new UrlFrontier(10);
+        for (int i = 0; i < 15; i++) {
+            frontier.add("https://example.com/p/" + i);
+        }
+
+        assertThat(frontier.size()).isEqualTo(10);
+        assertThat(frontier.getOverflow()).isEqualTo(5);
+    }
+
+    @Test
+    void neverOvershootsTheLimitUnderConcurrentAdds() throws InterruptedException {
+        UrlFrontier frontier = new UrlFrontier(1_000);
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    if (frontier.add("https://example.com/t" + thread + "/" + i)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(accepted.get()).isEqualTo(1_000);
+        assertThat(frontier.size()).isEqualTo(1_000);
+        assertThat(frontier.getOverflow()).isEqualTo(8 * 5_000 - 1_000);
+    }
+
+    @Test
+    void acceptsEachUrlOnceUnderConcurrentAdds() throws InterruptedException {
+        UrlFrontier frontier = new UrlFrontier(1_000_000);
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    if (frontier.add("https://example.com/p/" + i)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(accepted.get()).isEqualTo(20_000);
+        assertThat(frontier.size()).isEqualTo(20_000);
+        assertThat(frontier.getDuplicates()).isEqualTo(7 * 20_000);
+    }
+}
@@ -0,0 +1,64 @@
+package searchengine;
+
+import org.junit.jupiter.api.Test;
+import searchengine.morphology.WordCounts;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WordCountsTest {
+
+    private static final String[] PIECES = {
+            "Зебры", "ПАСУТСЯ", "ёжик", "Ёлка", "running", "Mice", "İstanbul", "ΣΟΦΊΑ", "σοφός", "𝐀bc",
+            "abcабв", "x", "я", "co-op", "don't", "42", "3d", ",", ".", " ", "\n", "—", "«", "»", " ", "́"
+    };
+
+    @Test
+    void countsTheSameWordsAsLowercaseAndSplit() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            int pieces = random.nextInt(60);
+            for (int i = 0; i < pieces; i++) {
+                text.append(PIECES[random.nextInt(PIECES.length)]);
+                if (random.nextBoolean()) text.append(' ');
+            }
+
+            assertThat(counts(WordCounts.of(text.toString()))).isEqualTo(splitCounts(text.toString()));
+        }
+    }
+
+    @Test
+    void flagsCyrillicWords() {
+        WordCounts words = WordCounts.of("Кот cat кот abcабв");
+
+        assertThat(words.size()).isEqualTo(3);
+        assertThat(words.total()).isEqualTo(4);
+        assertThat(words.word(0)).isEqualTo("кот");
+        assertThat(words.count(0)).isEqualTo(2);
+        assertThat(words.isCyrillic(0)).isTrue();
+        assertThat(words.isCyrillic(1)).isFalse();
+        assertThat(words.isCyrillic(2)).isTrue();
+        assertThat(words.wordAt(0)).isZero();
+        assertThat(words.wordAt(1)).isEqualTo(1);
+        assertThat(words.wordAt(2)).isZero();
+        assertThat(words.wordAt(3)).isEqualTo(2);
+    }
+
+    private static Map<String, Integer> counts(WordCounts words) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            counts.put(words.word(i), words.count(i));
+        }
+        return counts;
+    }
+
+    private static Map<String, Integer> splitCounts(String text) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}]+")) {
+            if (!word.isBlank()) counts.merge(word, 1, Integer::sum);
+        }
+        return counts;
+    }
+}